@@ -1,32 +1,113 @@
 package com.apolloframework.dataaccess;
 
 import java.io.Serializable;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.StringJoiner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+import javax.persistence.AttributeNode;
+import javax.persistence.Cache;
+import javax.persistence.CacheRetrieveMode;
+import javax.persistence.CacheStoreMode;
+import javax.persistence.Cacheable;
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceUnitUtil;
+import javax.persistence.Query;
+import javax.persistence.Tuple;
 import javax.persistence.TypedQuery;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaDelete;
 import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.CriteriaUpdate;
+import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.Fetch;
+import javax.persistence.criteria.FetchParent;
+import javax.persistence.criteria.JoinType;
 import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Selection;
+import javax.persistence.metamodel.Attribute;
+import javax.persistence.metamodel.ManagedType;
+import javax.persistence.metamodel.Metamodel;
+import javax.persistence.metamodel.SingularAttribute;
 
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.hibernate.FlushMode;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.annotations.QueryHints;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.MySQLDialect;
+import org.hibernate.dialect.Oracle8iDialect;
+import org.hibernate.dialect.PostgreSQL81Dialect;
+import org.hibernate.dialect.SQLServerDialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.metadata.ClassMetadata;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.persister.entity.EntityPersister;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.GenericTypeResolver;
+import org.springframework.core.annotation.AnnotationUtils;
 import org.springframework.core.convert.ConversionService;
+import org.springframework.core.convert.support.DefaultConversionService;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.domain.Sort.Order;
 import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.orm.jpa.EntityManagerFactoryUtils;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.ClassUtils;
 
+import com.apolloframework.query.Aggregate;
 import com.apolloframework.query.FilterBuilder;
+import com.apolloframework.query.FilterBuilder.PathResolver;
+import com.apolloframework.query.FilterCriteria;
+import com.apolloframework.query.FilterSignature;
 import com.apolloframework.query.Filters;
+import com.apolloframework.query.InLists;
 
 /**
  * Extension of {@link PagingAndSortingRepository} to provide integration with JPA.
@@ -37,6 +118,41 @@ import com.apolloframework.query.Filters;
  * @param <ID> the type of the ID of each record in the repository
  */
 public abstract class AbstractJPARepository<T, ID extends Serializable> implements PagingAndSortingRepository<T, ID> {
+    
+    private static final Logger log = LoggerFactory.getLogger(AbstractJPARepository.class);
+    
+    /** Number of entities written between flushes when no JDBC batch size has been configured */
+    public static final int DEFAULT_BATCH_SIZE = 50;
+    
+    /** Maximum number of values sent in a single <code>IN</code> list by the bulk operations */
+    public static final int DEFAULT_CHUNK_SIZE = 1000;
+    
+    /** Number of rows fetched from the database in every round trip when streaming entities */
+    public static final int DEFAULT_FETCH_SIZE = 500;
+    
+    /** Determines if the read operations of the current thread load the entities as read-only */
+    private static final ThreadLocal<Boolean> READ_ONLY = new ThreadLocal<>();
+    
+    /** Maximum number of compiled queries kept by every repository */
+    private static final int MAX_COMPILED_QUERIES = 500;
+    
+    /** Default time in seconds a {@link CountMode#CACHED} count is reused */
+    public static final int DEFAULT_COUNT_CACHE_SECONDS = 30;
+    
+    /** The hints to read and store the entities in the second-level cache */
+    private static final Map<String, Object> CACHE_HINTS;
+    static {
+        Map<String, Object> hints = new HashMap<>();
+        hints.put("javax.persistence.cache.retrieveMode", CacheRetrieveMode.USE);
+        hints.put("javax.persistence.cache.storeMode", CacheStoreMode.USE);
+        CACHE_HINTS = Collections.unmodifiableMap(hints);
+    }
+    
+    /** The hint of the entity graph whose associations are loaded along with the entities */
+    private static final String LOAD_GRAPH_HINT = "javax.persistence.loadgraph";
+    
+    /** The name of the ID field of the entities */
+    protected static final String ID_FIELD = "id";
 
     /** The generic type T used for the current repository */
     protected final Class<T> repositoryType;
@@ -48,6 +164,39 @@ public abstract class AbstractJPARepository<T, ID extends Serializable> implemen
     /** The conversion service */
     @Autowired
     protected ConversionService conversionService;
+    
+    /** Time in seconds a {@link CountMode#CACHED} count is reused */
+    protected int countCacheSeconds = DEFAULT_COUNT_CACHE_SECONDS;
+    
+    /**
+     * The executor to run the count queries concurrently with the page queries,
+     * or <code>null</code> to run them sequentially
+     */
+    protected Executor queryExecutor;
+    
+    /**
+     * Determines if the read operations of the repository load the entities as read-only
+     * @see #withReadOnly(Supplier)
+     */
+    protected boolean readOnly;
+    
+    /**
+     * Determines if the reads of the repository use the second-level and query caches,
+     * by default when the entity is marked as cacheable
+     */
+    protected boolean cacheable;
+    
+    /** The cache of the {@link CountMode#CACHED} counts, cleared on every write */
+    private final CountCache countCache = new CountCache();
+    
+    /** The settings of the <code>IN</code> lists of the filters */
+    protected InLists inLists = InLists.DEFAULT;
+    
+    /** The JPQL compiled for every statement and {@link FilterSignature} */
+    private final ConcurrentMap<String, String> compiledQueries = new ConcurrentHashMap<>();
+    
+    /** The distinct shapes of the <code>IN</code> lists sent to the database, as defined by {@link InLists#shapeOf(List)} */
+    private final Set<Long> inListShapes = ConcurrentHashMap.newKeySet();
 
     
     /**
@@ -56,25 +205,107 @@ public abstract class AbstractJPARepository<T, ID extends Serializable> implemen
     @SuppressWarnings("unchecked")
     public AbstractJPARepository() {
         this.repositoryType = (Class<T>) GenericTypeResolver.resolveTypeArguments(getClass(), AbstractJPARepository.class)[0];
+        
+        Cacheable cacheableAnnotation = AnnotationUtils.findAnnotation(repositoryType, Cacheable.class);
+        this.cacheable = ((cacheableAnnotation != null) && cacheableAnnotation.value()) ||
+                (AnnotationUtils.findAnnotation(repositoryType, org.hibernate.annotations.Cache.class) != null);
     }
     
     
     /**
-     * Creates a AutoCloseable {@link EntityManager} using the current {@link EntityManagerFactory}
+     * Creates a AutoCloseable {@link EntityManager} using the current {@link EntityManagerFactory}.
+     * Inside a unit of work (a Spring-managed transaction or a {@link #withUnitOfWork(Supplier)} block)
+     * the entity manager of the unit of work is reused, so all the repositories share its persistence
+     * context and connection, and closing the returned instance keeps it open
      * @return {@link CloseableEntityManager} instance
      */
     protected CloseableEntityManager createEntityManager() {
+        EntityManager shared = EntityManagerFactoryUtils.getTransactionalEntityManager(entityManagerFactory);
+        
+        return (shared != null) ? new CloseableEntityManager(shared, true) : this.createDedicatedEntityManager();
+    }
+    
+    /**
+     * Creates a AutoCloseable {@link EntityManager} for the read operations. In {@link #isReadOnly() read-only mode}
+     * the session loads the entities as read-only (without the snapshots used for dirty checking) and never
+     * flushes. A shared entity manager keeps its modes, since the unit of work may still write, and only
+     * the queries are marked as read-only
+     * @return {@link CloseableEntityManager} instance
+     */
+    protected CloseableEntityManager createReadEntityManager() {
+        CloseableEntityManager entityManager = this.createEntityManager();
+        
+        if(this.isReadOnly() && !entityManager.isShared()) {
+            Session session = entityManager.unwrap(Session.class);
+            session.setDefaultReadOnly(true);
+            session.setFlushMode(FlushMode.MANUAL);
+        }
+        
+        return entityManager;
+    }
+    
+    /**
+     * Creates a AutoCloseable {@link EntityManager} that never belongs to the current unit of work,
+     * for the operations that need their own persistence context or connection
+     * @return {@link CloseableEntityManager} instance
+     */
+    protected CloseableEntityManager createDedicatedEntityManager() {
         return new CloseableEntityManager(entityManagerFactory.createEntityManager());
     }
     
+    /**
+     * Runs the given work in a unit of work, where every repository of the same {@link EntityManagerFactory}
+     * reuses a single {@link EntityManager} (and its first-level cache) instead of opening one per call.
+     * The entity manager is closed when the work finishes. Each write operation still commits its own
+     * transaction, unless the work runs inside an outer transaction. If a unit of work or a Spring-managed
+     * transaction is already active, the work simply joins it
+     * @param work the work to run
+     * @return the result of the work
+     */
+    public <R> R withUnitOfWork(Supplier<R> work) {
+        R result;
+        
+        if(TransactionSynchronizationManager.hasResource(entityManagerFactory)) {
+            result = work.get();
+        } else {
+            EntityManager entityManager = entityManagerFactory.createEntityManager();
+            TransactionSynchronizationManager.bindResource(entityManagerFactory, new EntityManagerHolder(entityManager));
+            
+            try
+            {
+                result = work.get();
+            }
+            finally {
+                TransactionSynchronizationManager.unbindResource(entityManagerFactory);
+                EntityManagerFactoryUtils.closeEntityManager(entityManager);
+            }
+        }
+        
+        return result;
+    }
+    
+    /**
+     * Returns the number of entities to write between flushes in the batch operations.
+     * Uses the <code>hibernate.jdbc.batch_size</code> setting of the {@link EntityManagerFactory}
+     * so each flush fills exactly one JDBC batch, or {@link #DEFAULT_BATCH_SIZE} if it is not set
+     * @return the batch size
+     */
+    protected int getBatchSize() {
+        Object batchSize = entityManagerFactory.getProperties().get(AvailableSettings.STATEMENT_BATCH_SIZE);
+        int size = (batchSize != null) ? NumberUtils.toInt(batchSize.toString().trim()) : 0;
+        
+        return (size > 0) ? size : DEFAULT_BATCH_SIZE;
+    }
+    
     @Override
     public <S extends T> S save(S entity) {
         try(CloseableEntityManager entityManager = this.createEntityManager()) {
-            entityManager.getTransaction().begin();
+            entityManager.beginTransaction();
             entityManager.persist(entity);
-            entityManager.getTransaction().commit();
+            entityManager.commitTransaction();
         }
         
+        this.invalidateCaches(false);
         return entity;
     }
     
@@ -82,19 +313,214 @@ public abstract class AbstractJPARepository<T, ID extends Serializable> implemen
     @Override
     public <S extends T> Iterable<S> save(Iterable<S> entities) {
         List<S> result = new ArrayList<>();
-        entities.forEach(e -> result.add(save(e)));
+        entities.forEach(result::add);
         
+        this.saveInBatch(result, this.getBatchSize());
         return result;
     }
     
     
+    /**
+     * Saves all the given entities in a single {@link EntityManager} and transaction.
+     * The persistence context is flushed and cleared every {@code batchSize} entities, so
+     * the memory used is bounded by the batch size and not by the number of entities.
+     * The inserts of every flush are sent as JDBC batches when <code>hibernate.jdbc.batch_size</code>
+     * (and preferably <code>hibernate.order_inserts</code>) is configured; note that Hibernate
+     * disables insert batching for entities with <code>IDENTITY</code> generated ids
+     * @param entities the entities to save
+     * @param batchSize the number of entities to persist between flushes
+     * @return the number of saved entities
+     */
+    public <S extends T> long saveInBatch(Iterable<S> entities, int batchSize) {
+        if(batchSize <= 0) {
+            throw new IllegalArgumentException("The batch size must be greater than zero");
+        }
+        
+        long count = 0;
+        long start = System.nanoTime();
+        
+        try(CloseableEntityManager entityManager = this.createEntityManager()) {
+            entityManager.beginTransaction();
+            
+            List<S> batch = new ArrayList<>(batchSize);
+            for(S entity : entities) {
+                entityManager.persist(entity);
+                batch.add(entity);
+                
+                if((++count % batchSize) == 0) {
+                    entityManager.flush();
+                    
+                    // Only the saved entities are detached from a shared persistence context
+                    if(entityManager.isShared()) {
+                        batch.forEach(entityManager::detach);
+                    } else {
+                        entityManager.clear();
+                    }
+                    batch.clear();
+                }
+            }
+            
+            entityManager.commitTransaction();
+        }
+        
+        this.invalidateCaches(false);
+        
+        // Every save of several entities goes through this method, so the throughput is only a debug message
+        if(log.isDebugEnabled()) {
+            long elapsed = Math.max(System.nanoTime() - start, 1);
+            log.debug("Saved {} {} entities in {} ms ({} rows/s)",
+                    count,
+                    repositoryType.getSimpleName(),
+                    elapsed / 1000000,
+                    (count * 1000000000L) / elapsed);
+        }
+        
+        return count;
+    }
+    
+    
+    /**
+     * Inserts the given entities that do not exist yet and updates the ones that already exist, using
+     * the batch size of {@link #getBatchSize()}
+     * @param entities the entities to save
+     * @return the number of saved entities
+     * @see #upsertInBatch(Iterable, int)
+     */
+    public <S extends T> long upsert(Iterable<S> entities) {
+        return this.upsertInBatch(entities, this.getBatchSize());
+    }
+    
+    
+    /**
+     * Inserts the given entities that do not exist yet and updates the ones that already exist, so the
+     * same entities can be saved more than once. The entities are processed in chunks of {@code batchSize}
+     * in a single transaction: the existing entities of every chunk are read with one query, then they
+     * are merged and the new ones persisted, and the chunk is flushed at once. Each chunk therefore costs
+     * a constant number of round trips, instead of a lookup per entity. The entities without an ID are always inserted
+     * @param entities the entities to save
+     * @param batchSize the number of entities of every chunk
+     * @return the number of saved entities
+     */
+    public <S extends T> long upsertInBatch(Iterable<S> entities, int batchSize) {
+        if(batchSize <= 0) {
+            throw new IllegalArgumentException("The batch size must be greater than zero");
+        }
+        
+        long count = 0;
+        long updated = 0;
+        long start = System.nanoTime();
+        
+        try(CloseableEntityManager entityManager = this.createEntityManager()) {
+            entityManager.beginTransaction();
+            
+            List<S> chunk = new ArrayList<>(batchSize);
+            for(S entity : entities) {
+                chunk.add(entity);
+                
+                if(chunk.size() == batchSize) {
+                    updated += this.upsertChunk(entityManager, chunk);
+                    count += chunk.size();
+                    chunk.clear();
+                }
+            }
+            
+            if(!chunk.isEmpty()) {
+                updated += this.upsertChunk(entityManager, chunk);
+                count += chunk.size();
+            }
+            
+            entityManager.commitTransaction();
+        }
+        
+        this.invalidateCaches(false);
+        
+        if(log.isDebugEnabled()) {
+            long elapsed = Math.max(System.nanoTime() - start, 1);
+            log.debug("Upserted {} {} entities ({} updated) in {} ms ({} rows/s)",
+                    count,
+                    repositoryType.getSimpleName(),
+                    updated,
+                    elapsed / 1000000,
+                    (count * 1000000000L) / elapsed);
+        }
+        
+        return count;
+    }
+    
+    
+    /**
+     * Saves a chunk of entities in the current transaction, merging the existing ones and persisting the new ones
+     * @param entityManager the entity manager
+     * @param chunk the entities to save
+     * @return the number of entities that already existed
+     */
+    private <S extends T> int upsertChunk(CloseableEntityManager entityManager, List<S> chunk) {
+        PersistenceUnitUtil unitUtil = entityManagerFactory.getPersistenceUnitUtil();
+        Set<Object> existing = new HashSet<>();
+        List<Object> ids = new ArrayList<>();
+        
+        for(S entity : chunk) {
+            Object id = unitUtil.getIdentifier(entity);
+            if(id != null) {
+                ids.add(id);
+            }
+        }
+        
+        // Loading the existing entities (and not only their IDs) lets merge copy their state without a select per entity
+        List<Object> managed = new ArrayList<>();
+        if(!ids.isEmpty()) {
+            TypedQuery<T> query = this.createSelectQuery(entityManager, Filters.in(ID_FIELD, ids).toBuilder(), null)
+                    .setHint(QueryHints.READ_ONLY, false);
+            
+            for(T entity : query.getResultList()) {
+                existing.add(unitUtil.getIdentifier(entity));
+                managed.add(entity);
+            }
+        }
+        
+        int updated = 0;
+        for(S entity : chunk) {
+            Object id = unitUtil.getIdentifier(entity);
+            
+            if((id != null) && existing.contains(id)) {
+                entityManager.merge(entity);
+                updated++;
+            } else {
+                entityManager.persist(entity);
+                managed.add(entity);
+                
+                // A repeated ID in the same chunk updates the entity just persisted
+                if(id != null) {
+                    existing.add(id);
+                }
+            }
+        }
+        
+        entityManager.flush();
+        
+        // Only the entities of the chunk are detached from a shared persistence context
+        if(entityManager.isShared()) {
+            managed.forEach(entityManager::detach);
+        } else {
+            entityManager.clear();
+        }
+        
+        return updated;
+    }
+    
+    
     @Override
     public void delete(T entity) {
         try(CloseableEntityManager entityManager = this.createEntityManager()) {
+            entityManager.beginTransaction();
+            
             Session session = entityManager.unwrap(Session.class);
             session.delete(session.contains(entity) ? entity : session.merge(entity));
-            session.flush();
+            
+            entityManager.commitTransaction();
         }
+        
+        this.invalidateCaches(false);
     }
     
     
@@ -111,25 +537,213 @@ public abstract class AbstractJPARepository<T, ID extends Serializable> implemen
     
     
     /**
-     * Deletes all the entities that matches the given filters
-     * @param filters the filters to apply
+     * Deletes all the entities with the given IDs without loading them, using
+     * {@link #DEFAULT_CHUNK_SIZE} as the maximum size of each <code>IN</code> list
+     * @param ids the IDs of the entities to delete
+     * @return the number of deleted entities
      */
-    public void delete(FilterBuilder filters) {
+    public int deleteByIds(Iterable<ID> ids) {
+        return this.deleteByIds(ids, DEFAULT_CHUNK_SIZE);
+    }
+    
+    
+    /**
+     * Deletes all the entities with the given IDs without loading them.
+     * The IDs are split in chunks of at most {@code chunkSize} values, and every chunk
+     * is deleted with a single <code>DELETE ... WHERE id IN (...)</code> statement.
+     * All the chunks are deleted in the same transaction
+     * @param ids the IDs of the entities to delete
+     * @param chunkSize the maximum number of IDs in every statement
+     * @return the number of deleted entities
+     * @see #deleteByIds(Iterable, int, boolean)
+     */
+    public int deleteByIds(Iterable<ID> ids, int chunkSize) {
+        return this.deleteByIds(ids, chunkSize, false);
+    }
+    
+    
+    /**
+     * Deletes all the entities with the given IDs without loading them.
+     * The IDs are split in chunks of at most {@code chunkSize} values, and every chunk
+     * is deleted with a single <code>DELETE ... WHERE id IN (...)</code> statement.
+     * All the chunks are deleted in the same transaction
+     * @param ids the IDs of the entities to delete
+     * @param chunkSize the maximum number of IDs in every statement
+     * @param evictCache <code>true</code> to evict the entities of the repository from the second-level cache
+     * (always done for {@link #isCacheable() cacheable} repositories)
+     * @return the number of deleted entities
+     */
+    public int deleteByIds(Iterable<ID> ids, int chunkSize, boolean evictCache) {
+        if(chunkSize <= 0) {
+            throw new IllegalArgumentException("The chunk size must be greater than zero");
+        }
+        
+        int total = 0;
+        
         try(CloseableEntityManager entityManager = createEntityManager())
         {
-            entityManager.getTransaction().begin();
+            entityManager.beginTransaction();
             
-            CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
-            CriteriaDelete<T> cd = criteriaBuilder.createCriteriaDelete(repositoryType);
-            Root<T> root = cd.from(repositoryType);
+            List<ID> chunk = new ArrayList<>(chunkSize);
+            for(ID id : ids) {
+                chunk.add(id);
+                
+                if(chunk.size() == chunkSize) {
+                    total += this.executeDelete(entityManager, Filters.in(ID_FIELD, chunk).toBuilder());
+                    chunk = new ArrayList<>(chunkSize);
+                }
+            }
             
-            if(filters != null) {
-                cd.where(filters.convertToPredicate(criteriaBuilder, root));
+            if(!chunk.isEmpty()) {
+                total += this.executeDelete(entityManager, Filters.in(ID_FIELD, chunk).toBuilder());
             }
             
-            entityManager.createQuery(cd).executeUpdate();
+            entityManager.commitTransaction();
+        }
+        
+        this.invalidateCaches(evictCache || cacheable);
+        return total;
+    }
+    
+    
+    /**
+     * Deletes all the entities that matches the given filters, which cannot use joins
+     * @param filters the filters to apply
+     * @see #delete(FilterBuilder, boolean)
+     */
+    public void delete(FilterBuilder filters) {
+        this.delete(filters, false);
+    }
+    
+    
+    /**
+     * Deletes all the entities that matches the given filters with a single <code>DELETE</code> statement,
+     * without loading the entities. The filters cannot use joins
+     * @param filters the filters to apply
+     * @param evictCache <code>true</code> to evict the entities of the repository from the second-level cache
+     * (always done for {@link #isCacheable() cacheable} repositories)
+     */
+    public void delete(FilterBuilder filters, boolean evictCache) {
+        try(CloseableEntityManager entityManager = createEntityManager())
+        {
+            entityManager.beginTransaction();
+            this.executeDelete(entityManager, filters);
+            entityManager.commitTransaction();
+        }
+        
+        this.invalidateCaches(evictCache || cacheable);
+    }
+    
+    
+    /**
+     * Executes a {@link CriteriaDelete} with the given filters in the current transaction
+     * @param entityManager the entity manager
+     * @param filters the filters to apply
+     * @return the number of deleted entities
+     */
+    protected int executeDelete(CloseableEntityManager entityManager, FilterBuilder filters) {
+        FilterSignature signature = FilterSignature.of(filters, inLists);
+        
+        if(signature != null) {
+            if(signature.hasJoins()) {
+                throw new IllegalArgumentException("Bulk deletes cannot filter by joined entities");
+            }
             
-            entityManager.getTransaction().commit();
+            Query query = entityManager.createQuery(this.compileQuery("delete", signature, null));
+            return this.bindArguments(query, signature).executeUpdate();
+        }
+        
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaDelete<T> cd = criteriaBuilder.createCriteriaDelete(repositoryType);
+        Root<T> root = cd.from(repositoryType);
+        
+        if(filters != null) {
+            cd.where(this.toPredicate(filters, criteriaBuilder, root));
+            this.checkBulkJoins(root, "deletes");
+        }
+        
+        return entityManager.createQuery(cd).executeUpdate();
+    }
+    
+    
+    /**
+     * Updates the given fields of all the entities that match the given filters
+     * @param filters the filters to apply
+     * @param assignments the new value of every field
+     * @return the number of updated entities
+     * @see #update(FilterBuilder, Map, boolean)
+     */
+    public int update(FilterBuilder filters, Map<String, Object> assignments) {
+        return this.update(filters, assignments, false);
+    }
+    
+    
+    /**
+     * Updates the given fields of all the entities that match the given filters with a single
+     * <code>UPDATE</code> statement, without loading the entities. The values are converted to
+     * the types of the fields when needed. As any bulk statement, the update bypasses the
+     * entities already loaded in a persistence context, and it does not increment their versions.
+     * The filters cannot use joins
+     * @param filters the filters to apply
+     * @param assignments the new value of every field
+     * @param evictCache <code>true</code> to evict the entities of the repository from the second-level cache
+     * (always done for {@link #isCacheable() cacheable} repositories)
+     * @return the number of updated entities
+     */
+    public int update(FilterBuilder filters, Map<String, Object> assignments, boolean evictCache) {
+        if((assignments == null) || assignments.isEmpty()) {
+            throw new IllegalArgumentException("At least one field must be assigned");
+        }
+        
+        int total;
+        
+        try(CloseableEntityManager entityManager = createEntityManager())
+        {
+            entityManager.beginTransaction();
+            total = this.executeUpdate(entityManager, filters, assignments);
+            entityManager.commitTransaction();
+        }
+        
+        this.invalidateCaches(evictCache || cacheable);
+        return total;
+    }
+    
+    
+    /**
+     * Executes a {@link CriteriaUpdate} with the given filters and assignments in the current transaction
+     * @param entityManager the entity manager
+     * @param filters the filters to apply
+     * @param assignments the new value of every field
+     * @return the number of updated entities
+     */
+    protected int executeUpdate(CloseableEntityManager entityManager, FilterBuilder filters, Map<String, Object> assignments) {
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaUpdate<T> cu = criteriaBuilder.createCriteriaUpdate(repositoryType);
+        Root<T> root = cu.from(repositoryType);
+        
+        for(Map.Entry<String, Object> assignment : assignments.entrySet()) {
+            Path<Object> path = root.get(assignment.getKey());
+            cu.set(path, this.convertArgument(assignment.getValue(), path.getJavaType()));
+        }
+        
+        if(filters != null) {
+            cu.where(this.toPredicate(filters, criteriaBuilder, root));
+            this.checkBulkJoins(root, "updates");
+        }
+        
+        return entityManager.createQuery(cu).executeUpdate();
+    }
+    
+    
+    /**
+     * Validates that the filters of a bulk statement did not join other entities, since
+     * <code>UPDATE</code> and <code>DELETE</code> statements cannot have joins
+     * @param root the root of the bulk statement, with the filters already applied
+     * @param statement the kind of statement, for the error message
+     */
+    private void checkBulkJoins(Root<T> root, String statement) {
+        if(!root.getJoins().isEmpty()) {
+            throw new IllegalArgumentException("Bulk " + statement + " cannot filter by joined entities");
         }
     }
     
@@ -150,18 +764,25 @@ public abstract class AbstractJPARepository<T, ID extends Serializable> implemen
     public long count(FilterBuilder filters) {
         long total = 0;
         
-        try(CloseableEntityManager entityManager = createEntityManager())
+        FilterSignature signature = FilterSignature.of(filters, inLists);
+        
+        try(CloseableEntityManager entityManager = createReadEntityManager())
         {
+            if(signature != null) {
+                TypedQuery<Long> query = entityManager.createQuery(this.compileQuery("count", signature, null), Long.class);
+                return this.applyCacheHints(this.bindArguments(query, signature)).getSingleResult();
+            }
+            
             CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
             CriteriaQuery<Long> cq = criteriaBuilder.createQuery(Long.class);
             Root<T> root = cq.from(repositoryType);
             cq.select(criteriaBuilder.count(root));
             
             if(filters != null) {
-                cq.where(filters.convertToPredicate(criteriaBuilder, root));
+                cq.where(this.toPredicate(filters, criteriaBuilder, root));
             }
             
-            total = entityManager.createQuery(cq).getSingleResult();
+            total = this.applyCacheHints(entityManager.createQuery(cq)).getSingleResult();
         }
         
         return total;
@@ -170,26 +791,212 @@ public abstract class AbstractJPARepository<T, ID extends Serializable> implemen
     
     
     
-    @Override
-    public boolean exists(ID id) {
-        return this.count(new FilterBuilder(Filters.equals("id", id))) == 1;
+    /**
+     * Returns the number of entities available given the specified filters, using the given strategy
+     * @param filters the filters to apply
+     * @param countMode the strategy to compute the count, other than {@link CountMode#NONE}
+     * @return the number of entities, that may be approximate for {@link CountMode#CACHED}
+     * and {@link CountMode#ESTIMATED}
+     */
+    public long count(FilterBuilder filters, CountMode countMode) {
+        long total;
+        
+        if(countMode == CountMode.EXACT) {
+            total = this.count(filters);
+        } else if((countMode == CountMode.CACHED) || (countMode == CountMode.ESTIMATED)) {
+            Long estimated = ((countMode == CountMode.ESTIMATED) && (filters == null)) ? this.estimateCount() : null;
+            
+            if(estimated != null) {
+                total = estimated;
+            } else {
+                Object key = (filters != null) ? filters.toCacheKey() : Collections.emptyList();
+                Long cached = countCache.get(key);
+                
+                if(cached != null) {
+                    total = cached;
+                } else {
+                    total = this.count(filters);
+                    countCache.put(key, total, TimeUnit.SECONDS.toMillis(countCacheSeconds));
+                }
+            }
+        } else {
+            throw new IllegalArgumentException("Incorrect count mode");
+        }
+        
+        return total;
     }
     
     
     
     
-    @Override
-    public Iterable<T> findAll() {
-        return this.findAll((FilterBuilder)null);
+    /**
+     * Returns the number of entities estimated by the statistics of the database,
+     * currently supported for PostgreSQL, MySQL, SQL Server and Oracle
+     * @return the estimated number of entities, or <code>null</code> if the database is not supported
+     * or has no statistics for the table
+     */
+    protected Long estimateCount() {
+        Long estimated = null;
+        
+        try(CloseableEntityManager entityManager = createReadEntityManager())
+        {
+            SessionFactoryImplementor sessionFactory = (SessionFactoryImplementor)entityManager.unwrap(Session.class).getSessionFactory();
+            Dialect dialect = sessionFactory.getDialect();
+            ClassMetadata metadata = sessionFactory.getClassMetadata(repositoryType);
+            
+            String sql = null;
+            if(dialect instanceof PostgreSQL81Dialect) {
+                sql = "select reltuples from pg_class where oid = cast(?1 as regclass)";
+            } else if(dialect instanceof MySQLDialect) {
+                sql = "select table_rows from information_schema.tables where table_schema = database() and table_name = ?1";
+            } else if(dialect instanceof SQLServerDialect) {
+                sql = "select sum(rows) from sys.partitions where object_id = object_id(?1) and index_id in (0, 1)";
+            } else if(dialect instanceof Oracle8iDialect) {
+                sql = "select num_rows from user_tables where table_name = upper(?1)";
+            }
+            
+            if((sql != null) && (metadata instanceof AbstractEntityPersister)) {
+                List<?> result = entityManager.createNativeQuery(sql)
+                        .setParameter(1, ((AbstractEntityPersister)metadata).getTableName())
+                        .getResultList();
+                
+                if(!result.isEmpty() && (result.get(0) instanceof Number) && (((Number)result.get(0)).longValue() >= 0)) {
+                    estimated = ((Number)result.get(0)).longValue();
+                }
+            }
+        }
+        
+        return estimated;
     }
     
     
     
     
     @Override
-    public Page<T> findAll(Pageable pageRequest) {
-        return this.findAll(pageRequest, null);
-    }
+    public boolean exists(ID id) {
+        boolean result;
+        
+        try(CloseableEntityManager entityManager = createReadEntityManager())
+        {
+            // A new entity manager does not manage any entity, so only a shared one is checked
+            if(entityManager.isShared() && (this.getManagedEntity(entityManager, id) != null)) {
+                result = true;
+            } else {
+                FilterSignature signature = FilterSignature.of(Filters.equals(ID_FIELD, id).toBuilder(), inLists);
+                result = !this.bindArguments(entityManager.createQuery(this.compileQuery("exists", signature, null)), signature)
+                        .setMaxResults(1)
+                        .getResultList()
+                        .isEmpty();
+            }
+        }
+        
+        return result;
+    }
+    
+    
+    
+    
+    /**
+     * Determines if there is any entity that matches the given filters, reading at most one row
+     * instead of counting all of them
+     * @param filters the filters to apply
+     * @return <code>true</code> if at least one entity matches the filters
+     */
+    public boolean exists(FilterBuilder filters) {
+        boolean result;
+        
+        try(CloseableEntityManager entityManager = createReadEntityManager())
+        {
+            FilterSignature signature = FilterSignature.of(filters, inLists);
+            
+            if(signature != null) {
+                result = !this.bindArguments(entityManager.createQuery(this.compileQuery("exists", signature, null)), signature)
+                        .setMaxResults(1)
+                        .getResultList()
+                        .isEmpty();
+            } else {
+                result = !this.createSelectQuery(entityManager, filters, null)
+                        .setMaxResults(1)
+                        .getResultList()
+                        .isEmpty();
+            }
+        }
+        
+        return result;
+    }
+    
+    
+    
+    
+    /**
+     * Returns the IDs that exist among the given ones. The IDs managed by a shared persistence context
+     * are resolved without a query, and the rest are read in a single query (split in chunks of
+     * {@link #DEFAULT_CHUNK_SIZE} IDs) that only selects the IDs
+     * @param ids the IDs to check
+     * @return the IDs that exist
+     */
+    @SuppressWarnings("unchecked")
+    public Set<ID> existsAll(Collection<ID> ids) {
+        Set<ID> result = new HashSet<>();
+        
+        try(CloseableEntityManager entityManager = createReadEntityManager())
+        {
+            List<ID> pending = new ArrayList<>();
+            
+            for(ID id : new LinkedHashSet<>(ids)) {
+                if(entityManager.isShared() && (this.getManagedEntity(entityManager, id) != null)) {
+                    result.add(id);
+                } else {
+                    pending.add(id);
+                }
+            }
+            
+            for(int start = 0; start < pending.size(); start += DEFAULT_CHUNK_SIZE) {
+                FilterSignature signature = FilterSignature.of(
+                        Filters.in(ID_FIELD, pending.subList(start, Math.min(start + DEFAULT_CHUNK_SIZE, pending.size()))).toBuilder(), inLists);
+                
+                this.bindArguments(entityManager.createQuery(this.compileQuery("id", signature, null)), signature)
+                    .getResultList()
+                    .forEach(id -> result.add((ID)id));
+            }
+        }
+        
+        return result;
+    }
+    
+    
+    
+    
+    /**
+     * Returns the entity with the given ID if it is already managed by the persistence context
+     * of the entity manager, without reading the database nor the second-level cache
+     * @param entityManager the entity manager
+     * @param id the ID of the entity
+     * @return the managed entity, or <code>null</code> if it is not managed
+     */
+    @SuppressWarnings("unchecked")
+    protected T getManagedEntity(EntityManager entityManager, ID id) {
+        SessionImplementor session = entityManager.unwrap(SessionImplementor.class);
+        EntityPersister persister = session.getFactory().getEntityPersister(repositoryType.getName());
+        
+        return (T)session.getPersistenceContext().getEntity(session.generateEntityKey(id, persister));
+    }
+    
+    
+    
+    
+    @Override
+    public Iterable<T> findAll() {
+        return this.findAll((FilterBuilder)null);
+    }
+    
+    
+    
+    
+    @Override
+    public Page<T> findAll(Pageable pageRequest) {
+        return this.findAll(pageRequest, null);
+    }
     
     
     
@@ -235,84 +1042,1474 @@ public abstract class AbstractJPARepository<T, ID extends Serializable> implemen
     public Page<T> findAll(Pageable pageRequest, FilterBuilder filters) {
         Page<T> page = null;
         
-        try(CloseableEntityManager entityManager = createEntityManager())
-        {
-            CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
-            CriteriaQuery<T> cq = criteriaBuilder.createQuery(repositoryType);
-            Root<T> root = cq.from(repositoryType);
-            
-            if(filters != null) {
-                cq.where(filters.convertToPredicate(criteriaBuilder, root));
+        // Check pagination (if any)
+        if(pageRequest != null) {
+            page = this.findPage(pageRequest, filters, CountMode.EXACT);
+        } else {
+            try(CloseableEntityManager entityManager = createReadEntityManager())
+            {
+                page = new PageImpl<>(this.createSelectQuery(entityManager, filters, null).getResultList());
             }
+        }
 
-            // Then, check pagination (if any)
-            if(pageRequest != null) {
-                // Add sorting (if any)
-                if(pageRequest.getSort() != null) {
-                    for(Order order : pageRequest.getSort()) {
-                        Path<T> path = root.get(order.getProperty());
-                        if(order.isAscending())
-                            cq.orderBy(criteriaBuilder.asc(path));
-                        else
-                            cq.orderBy(criteriaBuilder.desc(path));
-                    }
-                }
-                
-                // Create the query
-                TypedQuery<T> q = entityManager.createQuery(cq);
-
-                // Add the pagination
-                if(pageRequest.getOffset() != 0)
-                    q.setFirstResult(pageRequest.getOffset());
-
-                if((pageRequest.getPageSize() != 0) && (pageRequest.getPageSize() != Integer.MAX_VALUE))
-                    q.setMaxResults(pageRequest.getPageSize());
-                
-                
-                page = new PageImpl<>(
-                        q.getResultList(),
-                        pageRequest,
-                        this.count(filters));
+        return page;
+    }
+    
+    
+    
+    
+    /**
+     * Returns a {@link Slice} of entities meeting the given filters and the paging restriction provided in the {@code Pageable} object,
+     * computing the total number of entities with the given strategy.
+     * The result is a {@link Page} for every strategy other than {@link CountMode#NONE}
+     * @param pageRequest the definition of the page
+     * @param filters the filters to apply
+     * @param countMode the strategy to compute the total number of entities
+     * @return a slice of entities
+     */
+    public Slice<T> findAll(Pageable pageRequest, FilterBuilder filters, CountMode countMode) {
+        Slice<T> slice;
+        
+        if(countMode == CountMode.NONE) {
+            List<T> content;
+            
+            try(CloseableEntityManager entityManager = createReadEntityManager())
+            {
+                // Read one more entity to know if there is a next page
+                content = this.findPageContent(entityManager, pageRequest, filters, 1);
+            }
+            
+            boolean hasNext = content.size() > pageRequest.getPageSize();
+            slice = new SliceImpl<>(
+                    hasNext ? new ArrayList<>(content.subList(0, pageRequest.getPageSize())) : content,
+                    pageRequest,
+                    hasNext);
+        } else {
+            slice = this.findPage(pageRequest, filters, countMode);
+        }
+        
+        return slice;
+    }
+    
+    
+    
+    
+    /**
+     * Sets the executor used to run the count queries of the paged queries concurrently with the page queries,
+     * each of them with its own {@link EntityManager}. The executor should be bounded (e.g. a fixed thread pool)
+     * since every paged query holds two connections while it runs
+     * @param queryExecutor the executor, or <code>null</code> to run the queries sequentially
+     */
+    public void setQueryExecutor(Executor queryExecutor) {
+        this.queryExecutor = queryExecutor;
+    }
+    
+    
+    
+    
+    /**
+     * @return <code>true</code> if the read operations load the entities as read-only, either because
+     * the repository is read-only or because they run inside a {@link #withReadOnly(Supplier)} block
+     */
+    public boolean isReadOnly() {
+        return readOnly || Boolean.TRUE.equals(READ_ONLY.get());
+    }
+    
+    
+    
+    
+    /**
+     * Sets the read-only mode of the repository. In read-only mode the entities returned by the read operations
+     * are not dirty checked, so their changes are never written, and the persistence context does not
+     * keep a snapshot of every entity, which roughly halves the memory used by large reads
+     * @param readOnly <code>true</code> to load the entities as read-only
+     */
+    public void setReadOnly(boolean readOnly) {
+        this.readOnly = readOnly;
+    }
+    
+    
+    
+    
+    /**
+     * Runs the given work with the read operations of every repository in read-only mode
+     * @param work the work to run
+     * @return the result of the work
+     * @see #setReadOnly(boolean)
+     */
+    public <R> R withReadOnly(Supplier<R> work) {
+        Boolean previous = READ_ONLY.get();
+        READ_ONLY.set(Boolean.TRUE);
+        
+        try
+        {
+            return work.get();
+        }
+        finally {
+            if(previous == null) {
+                READ_ONLY.remove();
             } else {
-                page = new PageImpl<>(entityManager.createQuery(cq).getResultList());
+                READ_ONLY.set(previous);
             }
         }
-
-        return page;
     }
     
     
     
+    
     /**
-     * Returns all instances of the type with the given IDs.
-     * @param ids the IDs to find
-     * @param sort the definition of the sort
-     * @return all entities of the type with the given IDs sorted by the given options
+     * @return <code>true</code> if the reads of the repository use the second-level and query caches
      */
-    public Iterable<T> findAll(Iterable<ID> ids, Sort sort) {
-        return this.findAll(
-                new PageRequest(0, Integer.MAX_VALUE, sort),
-                Filters.in("id", ids).toBuilder()).getContent();
+    public boolean isCacheable() {
+        return cacheable;
     }
     
     
     
     
-    @Override
-    public Iterable<T> findAll(Iterable<ID> ids) {
-        return this.findAll(ids, null);
+    /**
+     * Sets if the reads of the repository use the second-level and query caches. The entities are only
+     * stored in the second-level cache if the entity is cacheable for the persistence unit, and the queries are
+     * only cached if the query cache is enabled (<code>hibernate.cache.use_query_cache</code>). Every write of the
+     * repository evicts its query region, and the bulk writes also evict its entities
+     * @param cacheable <code>true</code> to use the caches
+     */
+    public void setCacheable(boolean cacheable) {
+        this.cacheable = cacheable;
     }
     
     
     
     
-    @Override
-    public T findOne(ID id) {
-        T result;
+    /**
+     * @return the settings of the <code>IN</code> lists of the filters
+     */
+    public InLists getInLists() {
+        return inLists;
+    }
+    
+    
+    
+    
+    /**
+     * Sets the padding and maximum size of the <code>IN</code> lists of the filters of this repository
+     * (e.g. a smaller size for an entity stored in a database that limits the number of parameters)
+     * @param inLists the settings of the <code>IN</code> lists
+     */
+    public void setInLists(InLists inLists) {
+        if(inLists == null) {
+            throw new IllegalArgumentException("The settings of the IN lists cannot be null");
+        }
         
-        try(CloseableEntityManager entityManager = createEntityManager())
+        this.inLists = inLists;
+    }
+    
+    
+    
+    
+    /**
+     * Returns the number of distinct shapes of <code>IN</code> lists sent to the database by this repository,
+     * where each shape produces a distinct SQL statement. A growing number indicates that the statement
+     * cache is not being reused
+     * @return the number of distinct shapes
+     */
+    public int getDistinctInListShapes() {
+        return inListShapes.size();
+    }
+    
+    
+    
+    
+    /**
+     * Resets the count of distinct shapes of <code>IN</code> lists
+     */
+    public void resetDistinctInListShapes() {
+        inListShapes.clear();
+    }
+    
+    
+    
+    
+    /**
+     * @return the name of the query cache region of the repository
+     */
+    protected String getQueryCacheRegion() {
+        return repositoryType.getName();
+    }
+    
+    
+    
+    
+    /**
+     * Marks a query as cacheable in the query cache region of the repository, if the repository is {@link #isCacheable() cacheable}
+     * @param query the query
+     * @return the same query
+     */
+    protected <Q extends Query> Q applyCacheHints(Q query) {
+        if(cacheable) {
+            query.setHint(QueryHints.CACHEABLE, true);
+            query.setHint(QueryHints.CACHE_REGION, this.getQueryCacheRegion());
+        }
+        
+        return query;
+    }
+    
+    
+    
+    
+    /**
+     * Invalidates the cached results after a write: the {@link CountMode#CACHED} counts, the query cache
+     * region of the repository and, for bulk writes that bypass the persistence context, the cached entities
+     * @param evictEntities <code>true</code> to evict the entities of the repository from the second-level cache
+     */
+    protected void invalidateCaches(boolean evictEntities) {
+        countCache.clear();
+        
+        if(cacheable) {
+            entityManagerFactory.unwrap(SessionFactory.class).getCache().evictQueryRegion(this.getQueryCacheRegion());
+        }
+        
+        if(evictEntities) {
+            entityManagerFactory.getCache().evict(repositoryType);
+        }
+    }
+    
+    
+    
+    
+    /**
+     * Returns a {@link Page} of entities, computing the total number of entities with the given strategy.
+     * If a {@link #queryExecutor} is defined, the count query runs concurrently with the page query (except
+     * inside a unit of work, where both queries share the entity manager).
+     * Otherwise it runs afterwards. In both cases the count is skipped (or cancelled, if it has not started yet)
+     * when the total can be deduced from the content of the page, or when the page query fails
+     * @param pageRequest the definition of the page
+     * @param filters the filters to apply
+     * @param countMode the strategy to compute the total number of entities
+     * @return a page of entities
+     */
+    protected Page<T> findPage(Pageable pageRequest, FilterBuilder filters, CountMode countMode) {
+        // Inside a unit of work the count must see the same transaction as the page
+        CompletableFuture<Long> count = ((queryExecutor != null) && !TransactionSynchronizationManager.hasResource(entityManagerFactory)) ?
+                CompletableFuture.supplyAsync(() -> this.count(filters, countMode), queryExecutor) :
+                    null;
+        
+        List<T> content;
+        
+        try(CloseableEntityManager entityManager = createReadEntityManager())
+        {
+            content = this.findPageContent(entityManager, pageRequest, filters, 0);
+        }
+        catch(RuntimeException ex) {
+            // The count is not needed anymore, so it does not hold a connection if it has not started yet
+            if(count != null) {
+                count.cancel(true);
+            }
+            throw ex;
+        }
+        
+        long total;
+        if((content.size() < pageRequest.getPageSize()) && ((pageRequest.getOffset() == 0) || !content.isEmpty())) {
+            total = pageRequest.getOffset() + content.size();
+            
+            if(count != null) {
+                count.cancel(true);
+            }
+        } else if(count != null) {
+            try
+            {
+                total = count.join();
+            }
+            catch(CompletionException ex) {
+                throw (ex.getCause() instanceof RuntimeException) ? (RuntimeException)ex.getCause() : ex;
+            }
+        } else {
+            total = this.count(filters, countMode);
+        }
+        
+        return new PageImpl<>(content, pageRequest, total);
+    }
+    
+    
+    
+    
+    /**
+     * Reads a page of entities meeting the given filters
+     * @param entityManager the entity manager
+     * @param pageRequest the definition of the page
+     * @param filters the filters to apply
+     * @param extraResults the number of entities to read after the end of the page
+     * @return the entities of the page
+     */
+    protected List<T> findPageContent(CloseableEntityManager entityManager, Pageable pageRequest, FilterBuilder filters, int extraResults) {
+        int maxResults = ((pageRequest.getPageSize() != 0) && (pageRequest.getPageSize() != Integer.MAX_VALUE)) ?
+                pageRequest.getPageSize() + extraResults :
+                    Integer.MAX_VALUE;
+        
+        return this.findRange(entityManager, filters, pageRequest.getSort(), pageRequest.getOffset(), maxResults);
+    }
+    
+    
+    
+    
+    /**
+     * Reads a range of entities meeting the given filters. When the filters fetch collections, the
+     * database cannot limit the rows of the entities (Hibernate would read all of them and page in memory),
+     * so the range is read in two phases: first the IDs of the range, and then the entities with those
+     * IDs and their fetched associations
+     * @param entityManager the entity manager
+     * @param filters the filters to apply
+     * @param sort the definition of the sort or <code>null</code> for no sorting
+     * @param firstResult the position of the first entity
+     * @param maxResults the maximum number of entities, or {@link Integer#MAX_VALUE} for no limit
+     * @return the entities of the range
+     */
+    protected List<T> findRange(CloseableEntityManager entityManager, FilterBuilder filters, Sort sort, int firstResult, int maxResults) {
+        List<T> content;
+        
+        if((maxResults != Integer.MAX_VALUE) && this.fetchesCollections(entityManager, filters)) {
+            CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+            CriteriaQuery<Tuple> cq = criteriaBuilder.createTupleQuery();
+            Root<T> root = cq.from(repositoryType);
+            
+            // The joins of the filters may repeat the IDs, and the sorted properties are also selected
+            // because some databases only sort distinct queries by the selected columns
+            List<Selection<?>> selections = new ArrayList<>();
+            selections.add(root.get(ID_FIELD));
+            cq.distinct(true);
+            
+            if(filters != null) {
+                cq.where(this.toPredicate(filters, criteriaBuilder, root));
+            }
+            
+            if(sort != null) {
+                List<javax.persistence.criteria.Order> orders = this.toOrders(criteriaBuilder, root, sort);
+                orders.forEach(order -> selections.add(order.getExpression()));
+                cq.orderBy(orders);
+            }
+            
+            cq.multiselect(selections);
+            
+            List<Object> ids = new ArrayList<>();
+            for(Tuple tuple : entityManager.createQuery(cq).setFirstResult(firstResult).setMaxResults(maxResults).getResultList()) {
+                ids.add(tuple.get(0));
+            }
+            
+            content = new ArrayList<>(ids.size());
+            if(!ids.isEmpty()) {
+                // Fetch the entities of the page, keeping the order of the IDs
+                FilterBuilder fetchFilters = Filters.in(ID_FIELD, ids).toBuilder().withEntityGraph(filters.getEntityGraph());
+                filters.getFetches().forEach(fetchFilters::fetch);
+                
+                Map<Object, T> entities = new HashMap<>();
+                for(T entity : this.createSelectQuery(entityManager, fetchFilters, null).getResultList()) {
+                    entities.put(entityManagerFactory.getPersistenceUnitUtil().getIdentifier(entity), entity);
+                }
+                
+                ids.forEach(id -> content.add(entities.get(id)));
+            }
+        } else {
+            TypedQuery<T> query = this.createSelectQuery(entityManager, filters, sort);
+            
+            if(firstResult != 0)
+                query.setFirstResult(firstResult);
+            
+            if(maxResults != Integer.MAX_VALUE)
+                query.setMaxResults(maxResults);
+            
+            content = query.getResultList();
+        }
+        
+        return content;
+    }
+    
+    
+    
+    
+    /**
+     * Determines if the given filters fetch collections, either directly or through their entity graph
+     * @param entityManager the entity manager
+     * @param filters the filters
+     * @return <code>true</code> if a collection is fetched
+     */
+    protected boolean fetchesCollections(CloseableEntityManager entityManager, FilterBuilder filters) {
+        boolean result = false;
+        
+        if((filters != null) && filters.hasFetchPlan()) {
+            ManagedType<T> entityType = entityManagerFactory.getMetamodel().managedType(repositoryType);
+            
+            for(String association : filters.getFetches().keySet()) {
+                ManagedType<?> type = entityType;
+                
+                for(String name : StringUtils.split(association, '.')) {
+                    Attribute<?, ?> attribute = type.getAttribute(name);
+                    result = result || attribute.isCollection();
+                    
+                    if(attribute instanceof SingularAttribute && ((SingularAttribute<?, ?>)attribute).getType() instanceof ManagedType) {
+                        type = (ManagedType<?>)((SingularAttribute<?, ?>)attribute).getType();
+                    }
+                }
+            }
+            
+            if(filters.getEntityGraph() != null) {
+                for(AttributeNode<?> node : entityManager.getEntityGraph(filters.getEntityGraph()).getAttributeNodes()) {
+                    result = result || entityType.getAttribute(node.getAttributeName()).isCollection();
+                }
+            }
+        }
+        
+        return result;
+    }
+    
+    
+    
+    
+    /**
+     * Returns the given fields of the entities meeting the given filters as {@link Tuple tuples},
+     * where every element is aliased with its field path
+     * @param pageRequest the definition of the page or <code>null</code> for no pagination
+     * @param filters the filters to apply
+     * @param fields the paths of the fields to select (e.g. <code>name</code> or <code>address.city</code>)
+     * @return the tuples
+     * @see #findProjections(Class, Pageable, FilterBuilder, String...)
+     */
+    public List<Tuple> findTuples(Pageable pageRequest, FilterBuilder filters, String... fields) {
+        return this.findProjections(Tuple.class, pageRequest, filters, fields);
+    }
+    
+    
+    
+    
+    /**
+     * Returns the given fields of the entities meeting the given filters as arrays,
+     * with the values in the same order as the fields
+     * @param pageRequest the definition of the page or <code>null</code> for no pagination
+     * @param filters the filters to apply
+     * @param fields the paths of the fields to select (e.g. <code>name</code> or <code>address.city</code>)
+     * @return the arrays of values
+     * @see #findProjections(Class, Pageable, FilterBuilder, String...)
+     */
+    public List<Object[]> findValues(Pageable pageRequest, FilterBuilder filters, String... fields) {
+        // Read as tuples, since a single selection would not be wrapped in an array
+        return this.findTuples(pageRequest, filters, fields).stream()
+                .map(Tuple::toArray)
+                .collect(Collectors.toList());
+    }
+    
+    
+    
+    
+    /**
+     * Returns the given fields of the entities meeting the given filters, without loading the entities.
+     * Only the selected columns are read, and no entity or proxy is added to the persistence context.
+     * The fields are paths of the entity, where the fields of an association are prefixed with the
+     * name of the join (e.g. <code>address.city</code>), which uses the join types defined in the filters.
+     * The sort of the page may also use these paths. The results are either {@link Tuple tuples} or
+     * instances of the projection type built with the constructor whose parameters match the fields.
+     * The total number of results is given by {@link #count(FilterBuilder)}
+     * @param projectionType the type of the results ({@link Tuple} or a DTO)
+     * @param pageRequest the definition of the page or <code>null</code> for no pagination
+     * @param filters the filters to apply
+     * @param fields the paths of the fields to select
+     * @return the projections
+     */
+    public <P> List<P> findProjections(Class<P> projectionType, Pageable pageRequest, FilterBuilder filters, String... fields) {
+        if((fields == null) || (fields.length == 0)) {
+            throw new IllegalArgumentException("At least one field must be selected");
+        }
+        
+        try(CloseableEntityManager entityManager = createReadEntityManager())
+        {
+            CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+            CriteriaQuery<P> cq = criteriaBuilder.createQuery(projectionType);
+            Root<T> root = cq.from(repositoryType);
+            PathResolver pathResolver = ((filters != null) ? filters : new FilterBuilder(null)).new PathResolver(root, inLists);
+            
+            List<Selection<?>> selections = new ArrayList<>();
+            for(String field : fields) {
+                selections.add(this.findPath(pathResolver, field).alias(field));
+            }
+            
+            if(projectionType == Tuple.class) {
+                cq.multiselect(selections);
+            } else {
+                cq.select(criteriaBuilder.construct(projectionType, selections.toArray(new Selection<?>[selections.size()])));
+            }
+            
+            if(filters != null) {
+                cq.where(filters.convertToPredicate(criteriaBuilder, pathResolver));
+                inListShapes.addAll(pathResolver.getInListShapes());
+            }
+            
+            TypedQuery<P> query;
+            if(pageRequest != null) {
+                if(pageRequest.getSort() != null) {
+                    List<javax.persistence.criteria.Order> orders = new ArrayList<>();
+                    for(Order order : pageRequest.getSort()) {
+                        Path<?> path = this.findPath(pathResolver, order.getProperty());
+                        orders.add(order.isAscending() ? criteriaBuilder.asc(path) : criteriaBuilder.desc(path));
+                    }
+                    cq.orderBy(orders);
+                }
+                
+                query = entityManager.createQuery(cq);
+                
+                if(pageRequest.getOffset() != 0)
+                    query.setFirstResult(pageRequest.getOffset());
+                
+                if((pageRequest.getPageSize() != 0) && (pageRequest.getPageSize() != Integer.MAX_VALUE))
+                    query.setMaxResults(pageRequest.getPageSize());
+            } else {
+                query = entityManager.createQuery(cq);
+            }
+            
+            return query.getResultList();
+        }
+    }
+    
+    
+    
+    
+    /**
+     * Computes the given aggregate functions over all the entities meeting the given filters
+     * @param filters the filters to apply
+     * @param aggregates the aggregate functions
+     * @return a single tuple with the result of every aggregate function, aliased with {@link Aggregate#getAlias()}
+     * @see #aggregate(FilterBuilder, List, Aggregate...)
+     */
+    public Tuple aggregate(FilterBuilder filters, Aggregate... aggregates) {
+        return this.aggregate(filters, Collections.emptyList(), aggregates).get(0);
+    }
+    
+    
+    
+    
+    /**
+     * Computes the given aggregate functions in the database for every group of entities meeting the given filters,
+     * so only one row per group is read instead of the entities. The groups are defined by the values of the given
+     * fields, where the fields of an association are prefixed with the name of the join (e.g. <code>customer.status</code>),
+     * which uses the join types defined in the filters. Every tuple contains the value of each group field (aliased
+     * with the field path) and the result of each aggregate function (aliased with {@link Aggregate#getAlias()}),
+     * and the tuples are sorted by the group fields
+     * @param filters the filters to apply
+     * @param groupBy the paths of the fields that define the groups, or an empty list for a single group
+     * @param aggregates the aggregate functions
+     * @return a tuple for every group
+     */
+    public List<Tuple> aggregate(FilterBuilder filters, List<String> groupBy, Aggregate... aggregates) {
+        if((aggregates == null) || (aggregates.length == 0)) {
+            throw new IllegalArgumentException("At least one aggregate function is required");
+        }
+        
+        try(CloseableEntityManager entityManager = createReadEntityManager())
+        {
+            CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+            CriteriaQuery<Tuple> cq = criteriaBuilder.createTupleQuery();
+            Root<T> root = cq.from(repositoryType);
+            PathResolver pathResolver = ((filters != null) ? filters : new FilterBuilder(null)).new PathResolver(root, inLists);
+            
+            List<Selection<?>> selections = new ArrayList<>();
+            List<Expression<?>> groups = new ArrayList<>();
+            
+            for(String field : groupBy) {
+                Path<?> path = this.findPath(pathResolver, field);
+                selections.add(path.alias(field));
+                groups.add(path);
+            }
+            
+            for(Aggregate aggregate : aggregates) {
+                Path<?> path = (aggregate.getFieldPath() != null) ? this.findPath(pathResolver, aggregate.getFieldPath()) : root;
+                selections.add(aggregate.toExpression(criteriaBuilder, path).alias(aggregate.getAlias()));
+            }
+            
+            cq.multiselect(selections);
+            
+            if(filters != null) {
+                cq.where(filters.convertToPredicate(criteriaBuilder, pathResolver));
+                inListShapes.addAll(pathResolver.getInListShapes());
+            }
+            
+            if(!groups.isEmpty()) {
+                cq.groupBy(groups);
+                cq.orderBy(groups.stream().map(criteriaBuilder::asc).collect(Collectors.toList()));
+            }
+            
+            return entityManager.createQuery(cq).getResultList();
+        }
+    }
+    
+    
+    
+    
+    /**
+     * Finds the query path of a field, where the fields of an association are
+     * prefixed with the name of the join (e.g. <code>address.city</code>)
+     * @param pathResolver the path resolver of the query
+     * @param fieldPath the path of the field
+     * @return the query path
+     */
+    protected Path<?> findPath(PathResolver pathResolver, String fieldPath) {
+        int separator = fieldPath.lastIndexOf('.');
+        
+        return (separator < 0) ?
+                pathResolver.findPath(null, fieldPath) :
+                    pathResolver.findPath(fieldPath.substring(0, separator), fieldPath.substring(separator + 1));
+    }
+    
+    
+    
+    
+    /**
+     * Returns a sequential {@link Stream} with all the entities meeting the given filters, using
+     * {@link #DEFAULT_FETCH_SIZE} as the number of rows fetched from the database in every round trip.
+     * @param filters the filters to apply
+     * @param sort the definition of the sort
+     * @return a stream of entities that must be closed after its use
+     * @see #stream(FilterBuilder, Sort, int)
+     */
+    public Stream<T> stream(FilterBuilder filters, Sort sort) {
+        return this.stream(filters, sort, DEFAULT_FETCH_SIZE);
+    }
+    
+    
+    
+    
+    /**
+     * Returns a sequential {@link Stream} with all the entities meeting the given filters.
+     * The entities are read through a forward-only database cursor, and every entity is evicted from
+     * the persistence context as soon as the next one is read, so the memory used does not depend on
+     * the number of rows. The entities are loaded as read-only, and the {@link EntityManager} remains
+     * open (and the cursor active) until the stream is closed, so the stream must be used inside a
+     * try-with-resources block
+     * @param filters the filters to apply
+     * @param sort the definition of the sort
+     * @param fetchSize the number of rows fetched from the database in every round trip
+     * @return a stream of entities that must be closed after its use
+     */
+    public Stream<T> stream(FilterBuilder filters, Sort sort, int fetchSize) {
+        // The stream clears its persistence context, so it never uses the one of the unit of work
+        CloseableEntityManager entityManager = this.createDedicatedEntityManager();
+        
+        try
+        {
+            // Some drivers (e.g. PostgreSQL) only use cursors inside a transaction
+            entityManager.getTransaction().begin();
+            
+            ScrollableResults results = this.createSelectQuery(entityManager, filters, sort)
+                    .unwrap(org.hibernate.Query.class)
+                    .setFetchSize(fetchSize)
+                    .setReadOnly(true)
+                    .setCacheable(false)
+                    .scroll(ScrollMode.FORWARD_ONLY);
+            
+            return StreamSupport.stream(
+                    Spliterators.spliteratorUnknownSize(
+                            new ScrollableResultsIterator(entityManager.unwrap(Session.class), results, fetchSize),
+                            Spliterator.ORDERED | Spliterator.NONNULL),
+                    false)
+                    .onClose(() -> {
+                        try
+                        {
+                            results.close();
+                            
+                            if(entityManager.getTransaction().isActive()) {
+                                entityManager.getTransaction().rollback();
+                            }
+                        }
+                        finally {
+                            entityManager.close();
+                        }
+                    });
+        }
+        catch(RuntimeException ex) {
+            entityManager.close();
+            throw ex;
+        }
+    }
+    
+    
+    
+    
+    /**
+     * Reads all the entities meeting the given filters in parallel, using a bounded {@link ForkJoinPool}
+     * with one thread per partition that is shut down once the scan finishes
+     * @param filters the filters to apply
+     * @param partitions the number of partitions read in parallel
+     * @param chunkSize the maximum number of entities given to the consumer at once
+     * @param consumer the consumer of the chunks of entities, called concurrently from several threads
+     * @return the number of entities read
+     * @see #scan(FilterBuilder, int, int, Executor, Consumer)
+     */
+    public long scan(FilterBuilder filters, int partitions, int chunkSize, Consumer<List<T>> consumer) {
+        if(partitions <= 0) {
+            throw new IllegalArgumentException("The number of partitions must be greater than zero");
+        }
+        
+        ForkJoinPool pool = new ForkJoinPool(partitions);
+        try
+        {
+            return this.scan(filters, partitions, chunkSize, pool, consumer);
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+    
+    
+    
+    
+    /**
+     * Reads all the entities meeting the given filters in parallel. The entities are split in disjoint ranges of IDs,
+     * computed from the minimum and maximum IDs for numeric IDs, or from a sample of ordered IDs otherwise.
+     * Every partition runs on the executor with its own {@link EntityManager} and database cursor (see
+     * {@link #stream(FilterBuilder, Sort)}), so each of them holds a connection while it runs. The entities
+     * are given to the consumer in chunks of detached entities, and the consumer must be thread-safe since
+     * the partitions call it concurrently
+     * @param filters the filters to apply
+     * @param partitions the number of partitions
+     * @param chunkSize the maximum number of entities given to the consumer at once
+     * @param executor the executor of the partitions
+     * @param consumer the consumer of the chunks of entities
+     * @return the number of entities read
+     */
+    public long scan(FilterBuilder filters, int partitions, int chunkSize, Executor executor, Consumer<List<T>> consumer) {
+        if(partitions <= 0) {
+            throw new IllegalArgumentException("The number of partitions must be greater than zero");
+        }
+        
+        if(chunkSize <= 0) {
+            throw new IllegalArgumentException("The chunk size must be greater than zero");
+        }
+        
+        FilterBuilder baseFilters = (filters != null) ? filters : new FilterBuilder(null);
+        List<Object> bounds = this.findPartitionBounds(filters, partitions);
+        List<CompletableFuture<Long>> results = new ArrayList<>();
+        
+        // The first and last ranges are open, so the entities outside the sampled bounds are also read
+        for(int i = 0; i <= bounds.size(); i++) {
+            List<FilterCriteria> range = new ArrayList<>();
+            if(i > 0) {
+                range.add(Filters.greaterThanOrEquals(ID_FIELD, (Comparable<?>)bounds.get(i - 1)));
+            }
+            if(i < bounds.size()) {
+                range.add(Filters.lessThan(ID_FIELD, (Comparable<?>)bounds.get(i)));
+            }
+            FilterCriteria idRange = Filters.and(range);
+            
+            results.add(CompletableFuture.supplyAsync(() -> this.scanPartition(baseFilters.combine(idRange), chunkSize, consumer), executor));
+        }
+        
+        long total = 0;
+        try
+        {
+            for(CompletableFuture<Long> result : results) {
+                total += result.join();
+            }
+        }
+        catch(CompletionException ex) {
+            throw (ex.getCause() instanceof RuntimeException) ? (RuntimeException)ex.getCause() : ex;
+        }
+        
+        return total;
+    }
+    
+    
+    
+    
+    /**
+     * Reads the entities of a partition through a database cursor and gives them to the consumer in chunks
+     * @param filters the filters of the partition
+     * @param chunkSize the maximum number of entities given to the consumer at once
+     * @param consumer the consumer of the chunks of entities
+     * @return the number of entities read
+     */
+    private long scanPartition(FilterBuilder filters, int chunkSize, Consumer<List<T>> consumer) {
+        long count = 0;
+        
+        try(Stream<T> stream = this.stream(filters, new Sort(ID_FIELD), Math.min(chunkSize, DEFAULT_FETCH_SIZE)))
+        {
+            List<T> chunk = new ArrayList<>(chunkSize);
+            Iterator<T> iterator = stream.iterator();
+            
+            while(iterator.hasNext()) {
+                chunk.add(iterator.next());
+                count++;
+                
+                if(chunk.size() == chunkSize) {
+                    consumer.accept(chunk);
+                    chunk = new ArrayList<>(chunkSize);
+                }
+            }
+            
+            if(!chunk.isEmpty()) {
+                consumer.accept(chunk);
+            }
+        }
+        
+        return count;
+    }
+    
+    
+    
+    
+    /**
+     * Computes the IDs that split the entities meeting the given filters in partitions. Numeric IDs are
+     * split in ranges of the same width between the minimum and the maximum IDs, and other IDs are sampled
+     * at evenly spaced positions of the ordered IDs (one query per bound)
+     * @param filters the filters to apply
+     * @param partitions the number of partitions
+     * @return the ordered bounds between the partitions, at most one less than the number of partitions
+     */
+    protected List<Object> findPartitionBounds(FilterBuilder filters, int partitions) {
+        Class<?> idType = entityManagerFactory.getMetamodel().entity(repositoryType).getIdType().getJavaType();
+        Set<Object> bounds = new LinkedHashSet<>();
+        
+        if(Number.class.isAssignableFrom(ClassUtils.resolvePrimitiveIfNecessary(idType))) {
+            Tuple limits = this.aggregate(filters, Aggregate.min(ID_FIELD), Aggregate.max(ID_FIELD));
+            
+            if((limits.get(0) != null) && (limits.get(1) != null)) {
+                BigInteger min = new BigInteger(limits.get(0).toString());
+                BigInteger span = new BigInteger(limits.get(1).toString()).subtract(min).add(BigInteger.ONE);
+                
+                for(int i = 1; i < partitions; i++) {
+                    BigInteger bound = min.add(span.multiply(BigInteger.valueOf(i)).divide(BigInteger.valueOf(partitions)));
+                    bounds.add(this.convertArgument(bound, idType));
+                }
+            }
+        } else {
+            long count = this.count(filters);
+            
+            try(CloseableEntityManager entityManager = createReadEntityManager())
+            {
+                CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+                CriteriaQuery<Object> cq = criteriaBuilder.createQuery(Object.class);
+                Root<T> root = cq.from(repositoryType);
+                cq.select(root.get(ID_FIELD)).orderBy(criteriaBuilder.asc(root.get(ID_FIELD)));
+                
+                if(filters != null) {
+                    cq.where(this.toPredicate(filters, criteriaBuilder, root));
+                }
+                
+                TypedQuery<Object> query = entityManager.createQuery(cq).setMaxResults(1);
+                for(int i = 1; i < partitions; i++) {
+                    int position = (int)((count * i) / partitions);
+                    
+                    if(position > 0) {
+                        query.setFirstResult(position).getResultList().forEach(bounds::add);
+                    }
+                }
+            }
+        }
+        
+        return new ArrayList<>(bounds);
+    }
+    
+    
+    
+    
+    /**
+     * Returns the first {@link KeysetSlice} of entities meeting the given filters.
+     * The following slices are read with {@link #findSlice(Keyset, int, FilterBuilder)}
+     * using {@link KeysetSlice#getNextKeyset()}, so every slice is read with a seek predicate
+     * instead of an offset and no count query is executed.
+     * If the sort does not include the ID field it is added as the last key, so the sort is unique.
+     * The sort keys must be non-null fields of the root entity
+     * @param sort the definition of the sort
+     * @param size the maximum number of entities in the slice
+     * @param filters the filters to apply
+     * @return the first slice of entities
+     */
+    public KeysetSlice<T> findSlice(Sort sort, int size, FilterBuilder filters) {
+        Sort uniqueSort = (sort != null) ? sort : new Sort(ID_FIELD);
+        if(uniqueSort.getOrderFor(ID_FIELD) == null) {
+            uniqueSort = uniqueSort.and(new Sort(ID_FIELD));
+        }
+        
+        return this.findSlice(uniqueSort, 0, size, filters, filters);
+    }
+    
+    
+    
+    
+    /**
+     * Returns the {@link KeysetSlice} of entities meeting the given filters that follows the given keyset
+     * @param after the keyset of the previous slice
+     * @param size the maximum number of entities in the slice
+     * @param filters the filters to apply, that must be the same used for the previous slices
+     * @return the slice of entities
+     * @see #findSlice(Sort, int, FilterBuilder)
+     */
+    public KeysetSlice<T> findSlice(Keyset after, int size, FilterBuilder filters) {
+        FilterCriteria seek = this.createSeekFilter(after);
+        
+        return this.findSlice(
+                after.getSort(),
+                after.getPage(),
+                size,
+                filters,
+                (filters != null) ? filters.combine(seek) : seek.toBuilder());
+    }
+    
+    
+    
+    
+    /**
+     * Creates the filter that selects the entities placed after a {@link Keyset}, for a sort
+     * <code>(a, b, id)</code> it is equivalent to <code>a &gt;= :a and (a &gt; :a or (a = :a and b &gt; :b)
+     * or (a = :a and b = :b and id &gt; :id))</code>, where the leading bound allows index range scans
+     * @param keyset the keyset of the previous slice
+     * @return the seek filter
+     */
+    protected FilterCriteria createSeekFilter(Keyset keyset) {
+        List<FilterCriteria> alternatives = new ArrayList<>();
+        List<FilterCriteria> equalities = new ArrayList<>();
+        FilterCriteria leadingBound = null;
+        int index = 0;
+        
+        for(Order order : keyset.getSort()) {
+            Comparable<?> value = (Comparable<?>)keyset.getValues().get(index++);
+            
+            if(value == null) {
+                throw new IllegalArgumentException("Keyset pagination does not support null values in " + order.getProperty());
+            }
+            
+            if(leadingBound == null) {
+                leadingBound = order.isAscending() ?
+                        Filters.greaterThanOrEquals(order.getProperty(), value) :
+                            Filters.lessThanOrEquals(order.getProperty(), value);
+            }
+            
+            List<FilterCriteria> terms = new ArrayList<>(equalities);
+            terms.add(order.isAscending() ?
+                    Filters.greaterThan(order.getProperty(), value) :
+                        Filters.lessThan(order.getProperty(), value));
+            
+            alternatives.add(Filters.and(terms));
+            equalities.add(Filters.equals(order.getProperty(), value));
+        }
+        
+        return Filters.and(leadingBound, Filters.or(alternatives));
+    }
+    
+    
+    
+    
+    /**
+     * Reads a {@link KeysetSlice} of entities
+     * @param sort the unique sort of the slices
+     * @param page the number of the slice
+     * @param size the maximum number of entities in the slice
+     * @param filters the filters requested by the caller
+     * @param seekFilters the filters including the seek predicate
+     * @return the slice of entities
+     */
+    private KeysetSlice<T> findSlice(Sort sort, int page, int size, FilterBuilder filters, FilterBuilder seekFilters) {
+        if(size <= 0) {
+            throw new IllegalArgumentException("The size must be greater than zero");
+        }
+        
+        List<T> content;
+        
+        try(CloseableEntityManager entityManager = createReadEntityManager())
+        {
+            // Read one more entity to know if there is a next slice
+            content = this.findRange(entityManager, seekFilters, sort, 0, size + 1);
+        }
+        
+        Keyset next = null;
+        if(content.size() > size) {
+            content = new ArrayList<>(content.subList(0, size));
+            
+            T last = content.get(size - 1);
+            List<Object> values = new ArrayList<>();
+            
+            for(Order order : sort) {
+                values.add(ID_FIELD.equals(order.getProperty()) ?
+                        entityManagerFactory.getPersistenceUnitUtil().getIdentifier(last) :
+                            this.getAttributeValue(last, order.getProperty()));
+            }
+            
+            next = new Keyset(sort, values, page + 1);
+        }
+        
+        return new KeysetSlice<>(content, page, size, sort, next);
+    }
+    
+    
+    
+    
+    /**
+     * Reads the value of an attribute of the given entity through the member mapped by the metamodel,
+     * so it works with both field and property access, even if the entity has no getter
+     * @param entity the entity
+     * @param name the name of the attribute
+     * @return the value of the attribute
+     */
+    protected Object getAttributeValue(T entity, String name) {
+        Member member = entityManagerFactory.getMetamodel().entity(repositoryType).getAttribute(name).getJavaMember();
+        
+        try
+        {
+            Object value;
+            if(member instanceof Field) {
+                Field field = (Field)member;
+                field.setAccessible(true);
+                value = field.get(entity);
+            } else if(member instanceof Method) {
+                Method method = (Method)member;
+                method.setAccessible(true);
+                value = method.invoke(entity);
+            } else {
+                throw new IllegalStateException("Cannot read the attribute " + name + " of " + repositoryType.getName());
+            }
+            
+            return value;
+        }
+        catch(IllegalAccessException | InvocationTargetException ex) {
+            throw new IllegalStateException("Cannot read the attribute " + name + " of " + repositoryType.getName(), ex);
+        }
+    }
+    
+    
+    
+    
+    /**
+     * Creates the query to select the entities meeting the given filters
+     * @param entityManager the entity manager
+     * @param filters the filters to apply
+     * @param sort the definition of the sort or <code>null</code> for no sorting
+     * @return the query
+     */
+    protected TypedQuery<T> createSelectQuery(CloseableEntityManager entityManager, FilterBuilder filters, Sort sort) {
+        FilterSignature signature = FilterSignature.of(filters, inLists);
+        
+        TypedQuery<T> query;
+        
+        // The fetches are only applied to criteria queries
+        if((signature != null) && this.isCompilable(sort) && ((filters == null) || filters.getFetches().isEmpty())) {
+            query = this.bindArguments(entityManager.createQuery(this.compileQuery("select", signature, sort), repositoryType), signature);
+        } else {
+            CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+            CriteriaQuery<T> cq = criteriaBuilder.createQuery(repositoryType);
+            Root<T> root = cq.from(repositoryType);
+            
+            if((filters != null) && this.applyFetches(root, filters)) {
+                // The fetched collections repeat the entities
+                cq.distinct(true);
+            }
+            
+            if(filters != null) {
+                cq.where(this.toPredicate(filters, criteriaBuilder, root));
+            }
+            
+            if(sort != null) {
+                cq.orderBy(this.toOrders(criteriaBuilder, root, sort));
+            }
+            
+            query = entityManager.createQuery(cq);
+        }
+        
+        if((filters != null) && (filters.getEntityGraph() != null)) {
+            query.setHint(LOAD_GRAPH_HINT, entityManager.getEntityGraph(filters.getEntityGraph()));
+        }
+        
+        this.applyCacheHints(query);
+        
+        // The hint also applies to a shared persistence context, whose default mode is not changed
+        if(this.isReadOnly()) {
+            query.setHint(QueryHints.READ_ONLY, true);
+        }
+        
+        return query;
+    }
+    
+    
+    
+    
+    /**
+     * Adds the fetches of the given filters to the root of a query
+     * @param root the entity root
+     * @param filters the filters
+     * @return <code>true</code> if a collection is fetched
+     */
+    protected boolean applyFetches(Root<T> root, FilterBuilder filters) {
+        boolean collection = false;
+        
+        // The fetches are shared by the associations with the same prefix, so each path is only fetched once
+        Map<String, Fetch<?, ?>> fetches = new HashMap<>();
+        
+        for(Map.Entry<String, JoinType> association : filters.getFetches().entrySet()) {
+            FetchParent<?, ?> parent = root;
+            StringBuilder path = new StringBuilder();
+            
+            for(String name : StringUtils.split(association.getKey(), '.')) {
+                if(path.length() > 0) {
+                    path.append('.');
+                }
+                path.append(name);
+                
+                Fetch<?, ?> fetch = fetches.get(path.toString());
+                if(fetch == null) {
+                    fetch = parent.fetch(name, association.getValue());
+                    fetches.put(path.toString(), fetch);
+                }
+                
+                collection = collection || fetch.getAttribute().isCollection();
+                parent = fetch;
+            }
+        }
+        
+        return collection;
+    }
+    
+    
+    
+    
+    /**
+     * Returns the JPQL for the given statement, filters and sort. The JPQL is rendered once for every
+     * structural {@link FilterSignature}, and the following queries with the same signature only need
+     * to bind their arguments, so neither the criteria tree nor the JPQL are built again
+     * @param statement the statement (<code>select</code>, <code>count</code>, <code>exists</code>, <code>id</code> or <code>delete</code>)
+     * @param signature the signature of the filters
+     * @param sort the definition of the sort or <code>null</code> for no sorting
+     * @return the JPQL with positional parameters
+     */
+    protected String compileQuery(String statement, FilterSignature signature, Sort sort) {
+        String key = statement + "|" + sort + "|" + signature.getSignature();
+        String jpql = compiledQueries.get(key);
+        
+        if(jpql == null) {
+            Metamodel metamodel = entityManagerFactory.getMetamodel();
+            String entityName = metamodel.entity(repositoryType).getName();
+            String where = signature.toWhereClause("e", c -> metamodel.entity(c).getName());
+            
+            StringBuilder query = new StringBuilder();
+            if("delete".equals(statement)) {
+                query.append("delete from ").append(entityName).append(" e");
+            } else {
+                String projection;
+                switch(statement) {
+                case "count":
+                    projection = "count(e)";
+                    break;
+                case "exists":
+                    projection = "1";
+                    break;
+                case "id":
+                    projection = "e." + ID_FIELD;
+                    break;
+                default:
+                    projection = "e";
+                }
+                
+                query.append("select ").append(projection).append(" from ")
+                    .append(entityName).append(" e")
+                    .append(signature.toJoinClause("e"));
+            }
+            
+            if(!where.isEmpty()) {
+                query.append(" where ").append(where);
+            }
+            
+            if(sort != null) {
+                StringJoiner orders = new StringJoiner(", ", " order by ", "").setEmptyValue("");
+                sort.forEach(o -> orders.add("e." + o.getProperty() + (o.isAscending() ? " asc" : " desc")));
+                query.append(orders);
+            }
+            
+            jpql = query.toString();
+            
+            if(compiledQueries.size() >= MAX_COMPILED_QUERIES) {
+                compiledQueries.clear();
+            }
+            compiledQueries.put(key, jpql);
+        }
+        
+        return jpql;
+    }
+    
+    
+    
+    
+    /**
+     * Converts the filters into the predicate of a criteria query, with the settings of the <code>IN</code> lists
+     * of the repository, recording the shapes of the lists sent to the database
+     * @param filters the filters
+     * @param criteriaBuilder the criteria builder
+     * @param root the root of the query
+     * @return the predicate
+     */
+    protected Predicate toPredicate(FilterBuilder filters, CriteriaBuilder criteriaBuilder, Root<T> root) {
+        PathResolver pathResolver = filters.new PathResolver(root, inLists);
+        Predicate predicate = filters.convertToPredicate(criteriaBuilder, pathResolver);
+        inListShapes.addAll(pathResolver.getInListShapes());
+        return predicate;
+    }
+    
+    
+    
+    
+    /**
+     * Binds the arguments of the filters to the positional parameters of a compiled query,
+     * converting them to the type expected by each parameter when needed
+     * @param query the query
+     * @param signature the signature of the filters
+     * @return the same query
+     */
+    protected <Q extends Query> Q bindArguments(Q query, FilterSignature signature) {
+        inListShapes.addAll(signature.getInListShapes());
+        
+        for(int i = 0; i < signature.getArguments().size(); i++) {
+            Object value = signature.getArguments().get(i);
+            Class<?> type = query.getParameter(i + 1).getParameterType();
+            
+            if(value instanceof Collection) {
+                List<Object> values = new ArrayList<>();
+                ((Collection<?>)value).forEach(v -> values.add(this.convertArgument(v, type)));
+                query.setParameter(i + 1, values);
+            } else {
+                query.setParameter(i + 1, this.convertArgument(value, type));
+            }
+        }
+        
+        return query;
+    }
+    
+    
+    
+    
+    /**
+     * Converts an argument to the type expected by a parameter, as the criteria queries do with their values
+     * @param value the value to convert
+     * @param type the expected type, or <code>null</code> if it is unknown
+     * @return the converted value, or the same value if no conversion is needed or possible
+     */
+    private Object convertArgument(Object value, Class<?> type) {
+        Object result = value;
+        ConversionService converter = (conversionService != null) ? conversionService : DefaultConversionService.getSharedInstance();
+        
+        if((value != null) && (type != null) &&
+                !ClassUtils.isAssignableValue(type, value) &&
+                converter.canConvert(value.getClass(), type)) {
+            result = converter.convert(value, type);
+        }
+        
+        return result;
+    }
+    
+    
+    
+    
+    /**
+     * Determines if a sort can be rendered in a compiled query
+     * @param sort the definition of the sort or <code>null</code> for no sorting
+     * @return <code>true</code> if every sort property is a valid identifier
+     */
+    private boolean isCompilable(Sort sort) {
+        boolean compilable = true;
+        
+        if(sort != null) {
+            for(Order order : sort) {
+                compilable = compilable && FilterSignature.isIdentifier(order.getProperty());
+            }
+        }
+        
+        return compilable;
+    }
+    
+    
+    
+    
+    /**
+     * Converts the given sort definition into the corresponding list of {@link javax.persistence.criteria.Order}
+     * @param criteriaBuilder the criteria builder
+     * @param root the entity root
+     * @param sort the definition of the sort
+     * @return the list of orders
+     */
+    protected List<javax.persistence.criteria.Order> toOrders(CriteriaBuilder criteriaBuilder, Root<T> root, Sort sort) {
+        List<javax.persistence.criteria.Order> orders = new ArrayList<>();
+        
+        for(Order order : sort) {
+            Path<T> path = root.get(order.getProperty());
+            orders.add(order.isAscending() ? criteriaBuilder.asc(path) : criteriaBuilder.desc(path));
+        }
+        
+        return orders;
+    }
+    
+    
+    
+    
+    /**
+     * Iterator over the entities of {@link ScrollableResults} that evicts every entity
+     * from the session once the next one has been requested
+     */
+    private class ScrollableResultsIterator implements Iterator<T> {
+        private final Session session;
+        private final ScrollableResults results;
+        private final int clearInterval;
+        private T current;
+        private T previous;
+        private int count;
+        
+        /**
+         * Default constructor
+         * @param session the session that owns the results
+         * @param results the results to iterate
+         * @param clearInterval the number of entities read between clearing the session
+         */
+        public ScrollableResultsIterator(Session session, ScrollableResults results, int clearInterval) {
+            this.session = session;
+            this.results = results;
+            this.clearInterval = Math.max(clearInterval, 1);
+        }
+        
+        
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean hasNext() {
+            if(current == null) {
+                if(previous != null) {
+                    // The associations loaded by the previous entities are also released periodically
+                    if((count % clearInterval) == 0) {
+                        session.clear();
+                    } else {
+                        session.evict(previous);
+                    }
+                    previous = null;
+                }
+                
+                if(results.next()) {
+                    current = (T)results.get(0);
+                }
+            }
+            
+            return current != null;
+        }
+        
+        
+        @Override
+        public T next() {
+            if(!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            
+            previous = current;
+            current = null;
+            count++;
+            
+            return previous;
+        }
+    }
+    
+    
+    
+    /**
+     * Returns all instances of the type with the given IDs.
+     * @param ids the IDs to find
+     * @param sort the definition of the sort
+     * @return all entities of the type with the given IDs sorted by the given options
+     */
+    public Iterable<T> findAll(Iterable<ID> ids, Sort sort) {
+        List<ID> idList = new ArrayList<>();
+        ids.forEach(idList::add);
+        
+        return this.findAll(sort, Filters.in(ID_FIELD, idList).toBuilder());
+    }
+    
+    
+    
+    
+    @Override
+    public Iterable<T> findAll(Iterable<ID> ids) {
+        return this.findAllByIds(ids);
+    }
+    
+    
+    
+    
+    /**
+     * Returns the entities with the given IDs in the same order, using {@link #DEFAULT_CHUNK_SIZE}
+     * as the maximum number of IDs read in every query
+     * @param ids the IDs to find
+     * @return the entities found, in the order of the given IDs
+     * @see #findAllByIds(Iterable, int)
+     */
+    public List<T> findAllByIds(Iterable<ID> ids) {
+        return this.findAllByIds(ids, DEFAULT_CHUNK_SIZE);
+    }
+    
+    
+    
+    
+    /**
+     * Returns the entities with the given IDs in the same order. The entities already managed by the
+     * persistence context or stored in the second-level cache are taken from there, and the rest are read
+     * in queries of at most {@code batchSize} IDs. No count query is executed, and the IDs not found are skipped
+     * @param ids the IDs to find
+     * @param batchSize the maximum number of IDs read in every query
+     * @return the entities found, in the order of the given IDs
+     */
+    public List<T> findAllByIds(Iterable<ID> ids, int batchSize) {
+        if(batchSize <= 0) {
+            throw new IllegalArgumentException("The batch size must be greater than zero");
+        }
+        
+        List<ID> requested = new ArrayList<>();
+        ids.forEach(requested::add);
+        
+        Map<Object, T> found = new HashMap<>();
+        
+        try(CloseableEntityManager entityManager = createReadEntityManager())
+        {
+            Cache cache = entityManagerFactory.getCache();
+            List<ID> pending = new ArrayList<>();
+            
+            for(ID id : new LinkedHashSet<>(requested)) {
+                T managed = this.getManagedEntity(entityManager, id);
+                
+                if(managed != null) {
+                    found.put(id, managed);
+                } else if(cache.contains(repositoryType, id)) {
+                    found.put(id, entityManager.find(repositoryType, id));
+                } else {
+                    pending.add(id);
+                }
+            }
+            
+            for(int start = 0; start < pending.size(); start += batchSize) {
+                List<ID> chunk = pending.subList(start, Math.min(start + batchSize, pending.size()));
+                
+                for(T entity : this.createSelectQuery(entityManager, Filters.in(ID_FIELD, chunk).toBuilder(), null).getResultList()) {
+                    found.put(entityManagerFactory.getPersistenceUnitUtil().getIdentifier(entity), entity);
+                }
+            }
+        }
+        
+        List<T> result = new ArrayList<>(requested.size());
+        for(ID id : requested) {
+            T entity = found.get(id);
+            if(entity != null) {
+                result.add(entity);
+            }
+        }
+        
+        return result;
+    }
+    
+    
+    
+    
+    @Override
+    public T findOne(ID id) {
+        T result;
+        
+        try(CloseableEntityManager entityManager = createReadEntityManager())
         {
-            result = entityManager.find(repositoryType, id);
+            result = cacheable ?
+                    entityManager.find(repositoryType, id, CACHE_HINTS) :
+                        entityManager.find(repositoryType, id);
         }
         
         return result;
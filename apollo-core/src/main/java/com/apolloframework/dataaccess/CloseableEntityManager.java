@@ -19,7 +19,9 @@ import javax.persistence.criteria.CriteriaUpdate;
 import javax.persistence.metamodel.Metamodel;
 
 /**
- * Wrapper to {@link EntityManager} that also implements the {@link AutoCloseable} interface
+ * Wrapper to {@link EntityManager} that also implements the {@link AutoCloseable} interface.
+ * A shared wrapper belongs to a unit of work (e.g. a Spring transaction), so closing it does
+ * not close the wrapped entity manager
  * @author amarenco
  *
  */
@@ -27,12 +29,57 @@ public class CloseableEntityManager implements AutoCloseable, EntityManager {
     
     private final EntityManager entityManager;
     
+    /** Determines if the entity manager belongs to a unit of work and must be kept open */
+    private final boolean shared;
+    
+    /** Determines if the current transaction was started by this wrapper */
+    private boolean transactionOwner;
+    
     /**
      * Default constructor
      * @param entityManager the entity manager to wrap
      */
     public CloseableEntityManager(EntityManager entityManager) {
+        this(entityManager, false);
+    }
+    
+    /**
+     * Constructor
+     * @param entityManager the entity manager to wrap
+     * @param shared <code>true</code> if the entity manager belongs to a unit of work and must be kept open
+     */
+    public CloseableEntityManager(EntityManager entityManager, boolean shared) {
         this.entityManager = entityManager;
+        this.shared = shared;
+    }
+    
+    /**
+     * @return <code>true</code> if the entity manager belongs to a unit of work and is not closed by this wrapper
+     */
+    public boolean isShared() {
+        return shared;
+    }
+    
+    /**
+     * Begins a transaction, unless the entity manager has already joined one (e.g. the transaction
+     * of the unit of work), in which case the operations run in that transaction
+     */
+    public void beginTransaction() {
+        if(!entityManager.isJoinedToTransaction()) {
+            entityManager.getTransaction().begin();
+            transactionOwner = true;
+        }
+    }
+    
+    /**
+     * Commits the transaction started by {@link #beginTransaction()}. The transactions that
+     * were not started by this wrapper are left to their owner
+     */
+    public void commitTransaction() {
+        if(transactionOwner) {
+            transactionOwner = false;
+            entityManager.getTransaction().commit();
+        }
     }
 
     @Override
@@ -292,7 +339,20 @@ public class CloseableEntityManager implements AutoCloseable, EntityManager {
     @Override
     public void close() throws IllegalStateException {
         if(this.entityManager != null) {
-            this.entityManager.close();
+            try
+            {
+                // Roll back the transactions started and not committed (e.g. after an exception)
+                if(transactionOwner && entityManager.getTransaction().isActive()) {
+                    entityManager.getTransaction().rollback();
+                }
+            }
+            finally {
+                transactionOwner = false;
+                
+                if(!shared) {
+                    this.entityManager.close();
+                }
+            }
         }
     }
 }
@@ -0,0 +1,79 @@
+package com.apolloframework.dataaccess;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Cache of the results of count queries that expire after a given time
+ * @author amarenco
+ *
+ */
+class CountCache {
+    /** Maximum number of counts kept before purging the cache */
+    private static final int MAX_ENTRIES = 1000;
+    
+    private final ConcurrentMap<Object, CachedCount> counts = new ConcurrentHashMap<>();
+    
+    
+    /**
+     * Returns the cached count for the given key
+     * @param key the key of the count
+     * @return the count, or <code>null</code> if it is not cached or it is expired
+     */
+    public Long get(Object key) {
+        Long count = null;
+        CachedCount cached = counts.get(key);
+        
+        if(cached != null) {
+            if(cached.expiration > System.currentTimeMillis()) {
+                count = cached.count;
+            } else {
+                counts.remove(key, cached);
+            }
+        }
+        
+        return count;
+    }
+    
+    
+    /**
+     * Caches a count
+     * @param key the key of the count
+     * @param count the count
+     * @param timeToLive the time in milliseconds the count is valid
+     */
+    public void put(Object key, long count, long timeToLive) {
+        long now = System.currentTimeMillis();
+        
+        if(counts.size() >= MAX_ENTRIES) {
+            counts.values().removeIf(c -> c.expiration <= now);
+            
+            if(counts.size() >= MAX_ENTRIES) {
+                counts.clear();
+            }
+        }
+        
+        counts.put(key, new CachedCount(count, now + timeToLive));
+    }
+    
+    
+    /**
+     * Removes all the cached counts
+     */
+    public void clear() {
+        counts.clear();
+    }
+    
+    
+    
+    /** A count and its expiration time */
+    private static final class CachedCount {
+        private final long count;
+        private final long expiration;
+        
+        public CachedCount(long count, long expiration) {
+            this.count = count;
+            this.expiration = expiration;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.apolloframework.dataaccess;
+
+/**
+ * Strategies to compute the total number of entities of a paged query
+ * @author amarenco
+ *
+ */
+public enum CountMode {
+    /** Runs an exact <code>count</code> query */
+    EXACT,
+    /** Runs no count query. The result is a slice that reads one more entity to know if there is a next page */
+    NONE,
+    /** Runs an exact <code>count</code> query and reuses its result for the same filters for a while */
+    CACHED,
+    /**
+     * Uses the row count estimated by the database statistics when the query has no filters and
+     * the database is supported. Otherwise behaves as {@link #CACHED}
+     */
+    ESTIMATED
+}
@@ -0,0 +1,64 @@
+package com.apolloframework.dataaccess;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.springframework.data.domain.Sort;
+
+/**
+ * Continuation token for keyset (seek) pagination. Holds the sort used to
+ * read a {@link KeysetSlice} and the values of the sort keys of its last entity,
+ * so the next slice starts right after it without scanning the previous rows
+ * @author amarenco
+ *
+ */
+public final class Keyset implements Serializable {
+    
+    private static final long serialVersionUID = 1L;
+    
+    /** The sort of the slices, always ending with a unique key */
+    private final Sort sort;
+    /** The values of the sort keys of the last entity read */
+    private final List<Object> values;
+    /** The number of the next slice */
+    private final int page;
+    
+    
+    /**
+     * Default constructor
+     * @param sort the sort of the slices
+     * @param values the values of the sort keys of the last entity read
+     * @param page the number of the next slice
+     */
+    public Keyset(Sort sort, List<Object> values, int page) {
+        this.sort = sort;
+        this.values = Collections.unmodifiableList(new ArrayList<>(values));
+        this.page = page;
+    }
+    
+    
+    /**
+     * @return the sort of the slices
+     */
+    public Sort getSort() {
+        return sort;
+    }
+    
+    
+    /**
+     * @return the values of the sort keys of the last entity read, in the same order as the sort
+     */
+    public List<Object> getValues() {
+        return values;
+    }
+    
+    
+    /**
+     * @return the number of the next slice
+     */
+    public int getPage() {
+        return page;
+    }
+}
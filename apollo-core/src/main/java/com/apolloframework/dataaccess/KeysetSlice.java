@@ -0,0 +1,44 @@
+package com.apolloframework.dataaccess;
+
+import java.util.List;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+
+/**
+ * {@link org.springframework.data.domain.Slice} read with keyset pagination,
+ * that includes the {@link Keyset} needed to read the next slice
+ * @author amarenco
+ *
+ * @param <T> the type of the content
+ */
+public class KeysetSlice<T> extends SliceImpl<T> {
+    
+    private static final long serialVersionUID = 1L;
+    
+    /** The keyset to read the next slice */
+    private final Keyset nextKeyset;
+    
+    
+    /**
+     * Default constructor
+     * @param content the content of the slice
+     * @param page the number of the slice
+     * @param size the requested size of the slice
+     * @param sort the sort of the slice
+     * @param nextKeyset the keyset to read the next slice, or <code>null</code> if this is the last slice
+     */
+    public KeysetSlice(List<T> content, int page, int size, Sort sort, Keyset nextKeyset) {
+        super(content, new PageRequest(page, size, sort), nextKeyset != null);
+        this.nextKeyset = nextKeyset;
+    }
+    
+    
+    /**
+     * @return the keyset to read the next slice, or <code>null</code> if this is the last slice
+     */
+    public Keyset getNextKeyset() {
+        return nextKeyset;
+    }
+}
@@ -0,0 +1,195 @@
+package com.apolloframework.query;
+
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.Path;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Aggregate function applied to a field of the entities, computed by the database.
+ * The fields of an association are prefixed with the name of the join (e.g. <code>orders.total</code>)
+ * @author amarenco
+ *
+ */
+public final class Aggregate {
+    /** The aggregate function */
+    private final AggregateFunction function;
+    /** The path of the field, or <code>null</code> to count the entities */
+    private final String fieldPath;
+    /** The alias of the result */
+    private final String alias;
+    
+    
+    /**
+     * Default constructor
+     * @param function the aggregate function
+     * @param fieldPath the path of the field, or <code>null</code> to count the entities
+     * @param alias the alias of the result
+     */
+    private Aggregate(AggregateFunction function, String fieldPath, String alias) {
+        if((function != AggregateFunction.COUNT) && StringUtils.isBlank(fieldPath)) {
+            throw new IllegalArgumentException("The field of the aggregate function is required");
+        }
+        
+        this.function = function;
+        this.fieldPath = StringUtils.isBlank(fieldPath) ? null : fieldPath;
+        this.alias = alias;
+    }
+    
+    
+    /**
+     * Creates an aggregate function aliased as <code>function(fieldPath)</code> (e.g. <code>sum(total)</code>)
+     * @param function the aggregate function
+     * @param fieldPath the path of the field, or <code>null</code> to count the entities
+     * @return the aggregate function
+     */
+    public static Aggregate of(AggregateFunction function, String fieldPath) {
+        return new Aggregate(function, fieldPath,
+                function.name().toLowerCase() + "(" + StringUtils.defaultString(fieldPath, "*") + ")");
+    }
+    
+    
+    /**
+     * @return the number of entities, aliased as <code>count(*)</code>
+     */
+    public static Aggregate count() {
+        return of(AggregateFunction.COUNT, null);
+    }
+    
+    
+    /**
+     * @param fieldPath the path of the field
+     * @return the number of non-null values of the field
+     */
+    public static Aggregate count(String fieldPath) {
+        return of(AggregateFunction.COUNT, fieldPath);
+    }
+    
+    
+    /**
+     * @param fieldPath the path of the field
+     * @return the number of distinct non-null values of the field
+     */
+    public static Aggregate countDistinct(String fieldPath) {
+        return of(AggregateFunction.COUNT_DISTINCT, fieldPath);
+    }
+    
+    
+    /**
+     * @param fieldPath the path of the numeric field
+     * @return the sum of the values of the field
+     */
+    public static Aggregate sum(String fieldPath) {
+        return of(AggregateFunction.SUM, fieldPath);
+    }
+    
+    
+    /**
+     * @param fieldPath the path of the numeric field
+     * @return the average of the values of the field, as a {@link Double}
+     */
+    public static Aggregate avg(String fieldPath) {
+        return of(AggregateFunction.AVG, fieldPath);
+    }
+    
+    
+    /**
+     * @param fieldPath the path of the field, of any comparable type
+     * @return the minimum value of the field
+     */
+    public static Aggregate min(String fieldPath) {
+        return of(AggregateFunction.MIN, fieldPath);
+    }
+    
+    
+    /**
+     * @param fieldPath the path of the field, of any comparable type
+     * @return the maximum value of the field
+     */
+    public static Aggregate max(String fieldPath) {
+        return of(AggregateFunction.MAX, fieldPath);
+    }
+    
+    
+    /**
+     * Creates a copy of the aggregate function with another alias
+     * @param alias the alias of the result
+     * @return a new aggregate function
+     */
+    public Aggregate as(String alias) {
+        if(StringUtils.isBlank(alias)) {
+            throw new IllegalArgumentException("The alias cannot be empty");
+        }
+        
+        return new Aggregate(function, fieldPath, alias);
+    }
+    
+    
+    /**
+     * Converts the aggregate function into the corresponding {@link Expression}
+     * @param criteriaBuilder the criteria builder
+     * @param path the path of the field, or the root entity when counting the entities
+     * @return the {@link Expression} object
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public Expression<?> toExpression(CriteriaBuilder criteriaBuilder, Path<?> path) {
+        Expression<?> expression;
+        
+        switch(function) {
+        case COUNT:
+            expression = criteriaBuilder.count(path);
+            break;
+        case COUNT_DISTINCT:
+            expression = criteriaBuilder.countDistinct(path);
+            break;
+        case SUM:
+            expression = criteriaBuilder.sum((Expression<Number>)path);
+            break;
+        case AVG:
+            expression = criteriaBuilder.avg((Expression<Number>)path);
+            break;
+        case MIN:
+            // Unlike min(), least() also accepts dates and strings
+            expression = criteriaBuilder.least((Expression<Comparable>)path);
+            break;
+        case MAX:
+            expression = criteriaBuilder.greatest((Expression<Comparable>)path);
+            break;
+        default:
+            throw new IllegalArgumentException("Incorrect aggregate function");
+        }
+        
+        return expression;
+    }
+    
+    
+    /**
+     * @return the aggregate function
+     */
+    public AggregateFunction getFunction() {
+        return function;
+    }
+    
+    
+    /**
+     * @return the path of the field, or <code>null</code> when counting the entities
+     */
+    public String getFieldPath() {
+        return fieldPath;
+    }
+    
+    
+    /**
+     * @return the alias of the result
+     */
+    public String getAlias() {
+        return alias;
+    }
+    
+    
+    @Override
+    public String toString() {
+        return alias;
+    }
+}
@@ -0,0 +1,10 @@
+package com.apolloframework.query;
+
+public enum AggregateFunction {
+    COUNT,
+    COUNT_DISTINCT,
+    SUM,
+    AVG,
+    MIN,
+    MAX
+}
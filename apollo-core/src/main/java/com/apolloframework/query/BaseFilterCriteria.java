@@ -1,17 +1,27 @@
 package com.apolloframework.query;
 
+import java.util.Objects;
+
+import org.apache.commons.lang3.StringUtils;
+
 /**
- * Base implementation of {@link FilterCriteria} with a field and an operation to be applied
+ * Base implementation of {@link FilterCriteria} with a field and an operation to be applied.
+ * The criteria are immutable, and two criteria are equal when they have the same class, field, operation
+ * and argument, so they can be shared between threads and used as keys of caches
  * @author amarenco
  *
  */
 public abstract class BaseFilterCriteria implements FilterCriteria {
     /** The name of the foreign entity needed to apply the filter */
-    protected String joinName;
+    protected final String joinName;
     /** The name of the field in where the filter is applied */
-    protected String fieldName;
+    protected final String fieldName;
     /** The operation applied to create the filter */
-    protected FilterOperation operation;
+    protected final FilterOperation operation;
+    /** The argument of the operation (e.g. its value), that must be immutable */
+    protected final Object argument;
+    /** The precomputed hash code */
+    private final int hash;
     
     
     /**
@@ -21,9 +31,23 @@ public abstract class BaseFilterCriteria implements FilterCriteria {
      * @param operation the operation for the filter
      */
     public BaseFilterCriteria(String joinName, String fieldName, FilterOperation operation) {
+        this(joinName, fieldName, operation, null);
+    }
+    
+    
+    /**
+     * Constructor with the argument of the operation
+     * @param joinName the join name
+     * @param fieldName the field name
+     * @param operation the operation for the filter
+     * @param argument the argument of the operation, that must be immutable
+     */
+    protected BaseFilterCriteria(String joinName, String fieldName, FilterOperation operation, Object argument) {
         this.joinName = joinName;
         this.fieldName = fieldName;
         this.operation = operation;
+        this.argument = argument;
+        this.hash = Objects.hash(this.getClass(), StringUtils.defaultString(joinName), fieldName, operation, argument);
     }
 
 
@@ -55,5 +79,35 @@ public abstract class BaseFilterCriteria implements FilterCriteria {
     public FilterBuilder toBuilder() {
         return new FilterBuilder(this);
     }
-
+    
+    
+    /**
+     * @return the name of the field including the join name (if any)
+     */
+    protected String getQualifiedFieldName() {
+        return StringUtils.isBlank(joinName) ? fieldName : joinName + "." + fieldName;
+    }
+    
+    
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+    
+    
+    @Override
+    public boolean equals(Object obj) {
+        boolean result = (this == obj);
+        
+        if(!result && (obj != null) && (obj.getClass() == this.getClass())) {
+            BaseFilterCriteria other = (BaseFilterCriteria)obj;
+            result = (hash == other.hash) &&
+                    (operation == other.operation) &&
+                    Objects.equals(fieldName, other.fieldName) &&
+                    StringUtils.defaultString(joinName).equals(StringUtils.defaultString(other.joinName)) &&
+                    Objects.equals(argument, other.argument);
+        }
+        
+        return result;
+    }
 }
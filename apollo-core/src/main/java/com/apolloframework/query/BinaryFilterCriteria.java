@@ -1,6 +1,12 @@
 package com.apolloframework.query;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
 import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.Expression;
 import javax.persistence.criteria.Path;
 import javax.persistence.criteria.Predicate;
 
@@ -8,18 +14,19 @@ import com.apolloframework.query.FilterBuilder.PathResolver;
 
 
 public class BinaryFilterCriteria extends BaseFilterCriteria {
-    private Object value;
+    private final Object value;
     
     /**
      * Default constructor
      * @param joinName the join name
      * @param fieldName the field name
      * @param operation the operation for the filter
-     * @param value the value of the unary filter
+     * @param value the value of the unary filter, where collections are copied into unmodifiable lists
      */
     public BinaryFilterCriteria(String joinName, String fieldName, FilterOperation operation, Object value) {
-        super(joinName, fieldName, operation);
-        this.value = value;
+        super(joinName, fieldName, operation, (value instanceof Collection) ?
+                Collections.unmodifiableList(new ArrayList<>((Collection<?>)value)) : value);
+        this.value = this.argument;
     }
     
     /**
@@ -31,20 +38,51 @@ public class BinaryFilterCriteria extends BaseFilterCriteria {
     
     
     @Override
+    @SuppressWarnings({ "unchecked", "rawtypes" })
     public Predicate toPredicate(CriteriaBuilder criteriaBuilder, PathResolver pathResolver) {
         Predicate predicate = null;
-        Path<?> path = pathResolver.findPath(this);
+        Path path = pathResolver.findPath(this);
         
         if(this.operation.equals(FilterOperation.EQUALS)) {
             predicate = criteriaBuilder.equal(path, value);
         } else if(this.operation.equals(FilterOperation.NOT_EQUALS)) {
             predicate = criteriaBuilder.notEqual(path, value);
         } else if(this.operation.equals(FilterOperation.IN)) {
-            predicate = path.in(value);
+            List<List<Object>> chunks = pathResolver.getInLists().toChunks(value);
+            pathResolver.recordInList(chunks);
+            
+            if(chunks.isEmpty()) {
+                predicate = criteriaBuilder.disjunction();
+            } else if(chunks.size() == 1) {
+                predicate = path.in(chunks.get(0));
+            } else {
+                predicate = criteriaBuilder.or(chunks.stream().map(path::in).toArray(Predicate[]::new));
+            }
+        } else if(this.operation.equals(FilterOperation.GREATER_THAN)) {
+            predicate = criteriaBuilder.greaterThan(path, (Comparable)value);
+        } else if(this.operation.equals(FilterOperation.GREATER_THAN_OR_EQUALS)) {
+            predicate = criteriaBuilder.greaterThanOrEqualTo(path, (Comparable)value);
+        } else if(this.operation.equals(FilterOperation.LESS_THAN)) {
+            predicate = criteriaBuilder.lessThan(path, (Comparable)value);
+        } else if(this.operation.equals(FilterOperation.LESS_THAN_OR_EQUALS)) {
+            predicate = criteriaBuilder.lessThanOrEqualTo(path, (Comparable)value);
+        } else if(this.operation.equals(FilterOperation.BETWEEN)) {
+            List<?> bounds = (List<?>)value;
+            predicate = criteriaBuilder.between(path, (Comparable)bounds.get(0), (Comparable)bounds.get(1));
+        } else if(LikePatterns.isPatternOperation(this.operation)) {
+            Expression<String> text = LikePatterns.isIgnoreCase(this.operation) ? criteriaBuilder.lower(path) : path;
+            predicate = criteriaBuilder.like(text, LikePatterns.toPattern(this.operation, value), LikePatterns.ESCAPE_CHAR);
         } else {
             throw new IllegalArgumentException("Incorrect filter operation");
         }
         
         return predicate;
     }
+    
+    
+    @Override
+    public String toString() {
+        return this.getQualifiedFieldName() + " " + operation + " " +
+                ((value instanceof CharSequence) ? "'" + value + "'" : String.valueOf(value));
+    }
 }
\ No newline at end of file
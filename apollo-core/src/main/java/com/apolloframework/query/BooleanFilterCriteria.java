@@ -2,7 +2,10 @@ package com.apolloframework.query;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
+import java.util.StringJoiner;
 
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.Predicate;
@@ -12,8 +15,10 @@ import com.apolloframework.query.FilterBuilder.PathResolver;
 
 public class BooleanFilterCriteria implements FilterCriteria {
     
-    private List<FilterCriteria> filters;
-    private BooleanOperator operator;
+    private final List<FilterCriteria> filters;
+    private final BooleanOperator operator;
+    /** The precomputed hash code */
+    private final int hash;
     
     /**
      * Default constructor
@@ -21,31 +26,33 @@ public class BooleanFilterCriteria implements FilterCriteria {
      * @param filters the filters
      */
     public BooleanFilterCriteria(BooleanOperator operator, FilterCriteria... filters) {
-        this(operator, new ArrayList<>(Arrays.asList(filters)));
+        this(operator, Arrays.asList(filters));
     }
     
     
     /**
      * Default constructor
      * @param operator the operator to join the filters
-     * @param filters the filters
+     * @param filters the filters, that are copied so the criteria is immutable
      */
     public BooleanFilterCriteria(BooleanOperator operator, List<FilterCriteria> filters) {
         this.operator = operator;
-        this.filters = filters;
+        this.filters = Collections.unmodifiableList(new ArrayList<>(filters));
+        this.hash = Objects.hash(operator, this.filters);
     }
     
     
     /**
-     * Adds a filter in the boolean criteria
-     * @param criteria the filter criteria to add
-     * @return the current criteria
+     * Creates a new boolean criteria with the same operator that also includes the given filters.
+     * The current criteria is not modified, since it may be shared with other filters
+     * @param criteria the filter criteria to include
+     * @return the new criteria
      */
-    public BooleanFilterCriteria add(FilterCriteria... criteria) {
-        for(FilterCriteria f : criteria)
-            this.filters.add(f);
+    public BooleanFilterCriteria with(FilterCriteria... criteria) {
+        List<FilterCriteria> newFilters = new ArrayList<>(this.filters);
+        newFilters.addAll(Arrays.asList(criteria));
         
-        return this;
+        return new BooleanFilterCriteria(operator, newFilters);
     }
     
     
@@ -58,7 +65,7 @@ public class BooleanFilterCriteria implements FilterCriteria {
     
     
     /**
-     * @return the list of included filters
+     * @return the unmodifiable list of included filters
      */
     public List<FilterCriteria> getFilters() {
         return this.filters;
@@ -82,5 +89,32 @@ public class BooleanFilterCriteria implements FilterCriteria {
     public FilterBuilder toBuilder() {
         return new FilterBuilder(this);
     }
-
+    
+    
+    @Override
+    public String toString() {
+        StringJoiner joiner = new StringJoiner(" " + operator + " ", "(", ")");
+        filters.forEach(f -> joiner.add(String.valueOf(f)));
+        
+        return joiner.toString();
+    }
+    
+    
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+    
+    
+    @Override
+    public boolean equals(Object obj) {
+        boolean result = (this == obj);
+        
+        if(!result && (obj instanceof BooleanFilterCriteria) && (obj.getClass() == this.getClass())) {
+            BooleanFilterCriteria other = (BooleanFilterCriteria)obj;
+            result = (hash == other.hash) && (operator == other.operator) && filters.equals(other.filters);
+        }
+        
+        return result;
+    }
 }
@@ -1,9 +1,16 @@
 package com.apolloframework.query;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 
 import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.From;
 import javax.persistence.criteria.JoinType;
 import javax.persistence.criteria.Path;
 import javax.persistence.criteria.Predicate;
@@ -14,6 +21,8 @@ import org.apache.commons.lang3.StringUtils;
 
 public class FilterBuilder {
     protected Map<String, JoinType> joinMap;
+    protected Map<String, JoinType> fetchMap;
+    protected String entityGraph;
     protected FilterCriteria filter;
     
     /**
@@ -22,13 +31,15 @@ public class FilterBuilder {
      */
     public FilterBuilder(FilterCriteria criteria) {
         this.joinMap = new HashMap<>();
+        this.fetchMap = new LinkedHashMap<>();
         this.filter = criteria;
     }
     
     
     /**
      * Adds a clause to the current filter using {@link BooleanOperator#AND}.
-     * Converts the current filter to {@link BooleanFilterCriteria} if required
+     * Converts the current filter to {@link BooleanFilterCriteria} if required.
+     * The criteria are immutable, so the previous filter is replaced and never modified
      * @param criteria the criteria for the builder
      * @return the current builder
      */
@@ -36,12 +47,12 @@ public class FilterBuilder {
         if(this.filter instanceof BooleanFilterCriteria) {
             BooleanFilterCriteria boolFilter = (BooleanFilterCriteria)this.filter;
             if(boolFilter.getOperator() == BooleanOperator.AND) {
-                boolFilter.add(criteria);
+                this.filter = boolFilter.with(criteria);
             } else {
-                this.filter = Filters.and(this.filter).add(criteria);
+                this.filter = Filters.and(this.filter).with(criteria);
             }
         } else {
-            this.filter = Filters.and(this.filter).add(criteria);
+            this.filter = Filters.and(this.filter).with(criteria);
         }
         
         return this;
@@ -50,7 +61,8 @@ public class FilterBuilder {
     
     /**
      * Adds a clause to the current filter using {@link BooleanOperator#OR}.
-     * Converts the current filter to {@link BooleanFilterCriteria} if required
+     * Converts the current filter to {@link BooleanFilterCriteria} if required.
+     * The criteria are immutable, so the previous filter is replaced and never modified
      * @param criteria the criteria for the builder
      * @return the current builder
      */
@@ -58,19 +70,35 @@ public class FilterBuilder {
         if(this.filter instanceof BooleanFilterCriteria) {
             BooleanFilterCriteria boolFilter = (BooleanFilterCriteria)this.filter;
             if(boolFilter.getOperator() == BooleanOperator.OR) {
-                boolFilter.add(criteria);
+                this.filter = boolFilter.with(criteria);
             } else {
-                this.filter = Filters.or(this.filter).add(criteria);
+                this.filter = Filters.or(this.filter).with(criteria);
             }
             
         } else {
-            this.filter = Filters.or(this.filter).add(criteria);
+            this.filter = Filters.or(this.filter).with(criteria);
         }
         
         return this;
     }
     
     
+    /**
+     * Creates a new builder with the same joins that matches both the current filter and the given criteria.
+     * Unlike {@link #and(FilterCriteria...)}, neither the current builder nor its criteria are modified
+     * @param criteria the criteria to add
+     * @return a new builder
+     */
+    public FilterBuilder combine(FilterCriteria criteria) {
+        FilterBuilder builder = new FilterBuilder((this.filter != null) ? Filters.and(this.filter, criteria) : criteria);
+        builder.joinMap.putAll(this.joinMap);
+        builder.fetchMap.putAll(this.fetchMap);
+        builder.entityGraph = this.entityGraph;
+        
+        return builder;
+    }
+    
+    
     /**
      * Defines a join field using {@link JoinType#INNER}
      * @param joinField the join field
@@ -82,7 +110,8 @@ public class FilterBuilder {
     
     
     /**
-     * Defines a join field and its type
+     * Defines a join field and its type. The type of a nested join is defined with its
+     * full path (e.g. <code>order.customer</code>)
      * @param joinField the join field
      * @param joinType the join type
      * @return the current builder
@@ -93,6 +122,77 @@ public class FilterBuilder {
     }
     
     
+    /**
+     * Fetches an association along with the entities using {@link JoinType#LEFT}, so the entities
+     * without the association are also returned
+     * @param association the association, where nested associations are separated by dots (e.g. <code>orders.items</code>)
+     * @return the current builder
+     */
+    public FilterBuilder fetch(String association) {
+        return this.fetch(association, JoinType.LEFT);
+    }
+    
+    
+    /**
+     * Fetches an association along with the entities, in the same query, instead of loading it lazily
+     * @param association the association, where nested associations are separated by dots (e.g. <code>orders.items</code>)
+     * @param joinType the join type
+     * @return the current builder
+     */
+    public FilterBuilder fetch(String association, JoinType joinType) {
+        this.fetchMap.put(association, joinType);
+        return this;
+    }
+    
+    
+    /**
+     * Fetches the associations of a named {@link javax.persistence.EntityGraph} along with the entities
+     * @param entityGraph the name of the entity graph, or <code>null</code> for no entity graph
+     * @return the current builder
+     */
+    public FilterBuilder withEntityGraph(String entityGraph) {
+        this.entityGraph = entityGraph;
+        return this;
+    }
+    
+    
+    /**
+     * @return the associations to fetch and their join types, in the order they were defined
+     */
+    public Map<String, JoinType> getFetches() {
+        return Collections.unmodifiableMap(fetchMap);
+    }
+    
+    
+    /**
+     * @return the name of the entity graph to fetch, or <code>null</code> if there is none
+     */
+    public String getEntityGraph() {
+        return entityGraph;
+    }
+    
+    
+    /**
+     * @return <code>true</code> if the builder defines associations or an entity graph to fetch
+     */
+    public boolean hasFetchPlan() {
+        return !fetchMap.isEmpty() || (entityGraph != null);
+    }
+    
+    
+    
+    
+    /**
+     * Returns an immutable key that identifies the entities selected by the builder, made of its simplified
+     * and interned criteria and its join types, so builders that select the same entities share the key.
+     * The fetch plan is not part of the key
+     * @return the key, that can be used in caches of counts and results
+     */
+    public Object toCacheKey() {
+        return Arrays.asList(FilterInterner.intern(FilterOptimizer.optimize(filter)), Collections.unmodifiableMap(new TreeMap<>(joinMap)));
+    }
+    
+    
     
     
     /**
@@ -102,7 +202,32 @@ public class FilterBuilder {
      * @return the {@link Predicate} object
      */
     public Predicate convertToPredicate(CriteriaBuilder criteriaBuilder, Root<?> root) {
-        return filter.toPredicate(criteriaBuilder, new PathResolver(root));
+        return this.convertToPredicate(criteriaBuilder, new PathResolver(root));
+    }
+    
+    
+    /**
+     * Converts the filter criteria into {@link Predicate} objects
+     * @param criteriaBuilder the criteria builder
+     * @param root the entity root
+     * @param inLists the settings of the <code>IN</code> lists
+     * @return the {@link Predicate} object
+     */
+    public Predicate convertToPredicate(CriteriaBuilder criteriaBuilder, Root<?> root, InLists inLists) {
+        return this.convertToPredicate(criteriaBuilder, new PathResolver(root, inLists));
+    }
+    
+    
+    /**
+     * Converts the filter criteria into {@link Predicate} objects using the given resolver,
+     * so the paths can be shared with other parts of the query (e.g. the selection).
+     * The criteria are simplified first with the {@link FilterOptimizer}
+     * @param criteriaBuilder the criteria builder
+     * @param pathResolver the path resolver of the query
+     * @return the {@link Predicate} object
+     */
+    public Predicate convertToPredicate(CriteriaBuilder criteriaBuilder, PathResolver pathResolver) {
+        return FilterOptimizer.optimize(filter).toPredicate(criteriaBuilder, pathResolver);
     }
     
     
@@ -111,12 +236,51 @@ public class FilterBuilder {
     public class PathResolver {
         private Root<?> root;
         
+        /** The joins already created for every join path, reused by all the criteria of the query */
+        private final Map<String, From<?, ?>> joins = new HashMap<>();
+        /** The settings of the <code>IN</code> lists */
+        private final InLists inLists;
+        /** The shapes of the <code>IN</code> lists of the predicates, as defined by {@link InLists#shapeOf(List)} */
+        private final List<Long> inListShapes = new ArrayList<>();
+        
         /**
-         * Default constructor
+         * Default constructor, with the {@link InLists#DEFAULT default settings} of the <code>IN</code> lists
          * @param root the root entity
          */
         public PathResolver(Root<?> root) {
+            this(root, InLists.DEFAULT);
+        }
+        
+        /**
+         * Constructor with the settings of the <code>IN</code> lists
+         * @param root the root entity
+         * @param inLists the settings of the <code>IN</code> lists
+         */
+        public PathResolver(Root<?> root, InLists inLists) {
             this.root = root;
+            this.inLists = inLists;
+        }
+        
+        /**
+         * @return the settings of the <code>IN</code> lists
+         */
+        public InLists getInLists() {
+            return inLists;
+        }
+        
+        /**
+         * Records the chunks of an <code>IN</code> list of the predicates
+         * @param chunks the chunks of the list
+         */
+        public void recordInList(List<List<Object>> chunks) {
+            inListShapes.add(InLists.shapeOf(chunks));
+        }
+        
+        /**
+         * @return the shapes of the <code>IN</code> lists of the predicates, as defined by {@link InLists#shapeOf(List)}
+         */
+        public List<Long> getInListShapes() {
+            return inListShapes;
         }
         
         /**
@@ -125,22 +289,65 @@ public class FilterBuilder {
          * @return the path for the filter
          */
         public Path<?> findPath(BaseFilterCriteria criteria) {
+            return this.findPath(criteria.getJoinName(), criteria.getFieldName());
+        }
+        
+        /**
+         * Finds the correct query path for a field
+         * @param joinName the name of the join, or <code>null</code> for fields of the root entity
+         * @param fieldName the name of the field, or <code>null</code> for the root entity
+         * @return the path for the field
+         */
+        public Path<?> findPath(String joinName, String fieldName) {
             Path<?> path;
-            if(StringUtils.isBlank(criteria.getFieldName())) {
+            if(StringUtils.isBlank(fieldName)) {
                 path = root;
-            } else if(StringUtils.isBlank(criteria.getJoinName())) {
-                path = root.get(criteria.getFieldName());
+            } else if(StringUtils.isBlank(joinName)) {
+                path = root.get(fieldName);
             } else {
-                JoinType joinType = joinMap.get(criteria.getJoinName());
-                if(joinType == null) {
-                    joinType = JoinType.INNER;
-                    joinMap.put(criteria.getJoinName(), joinType);
-                }
-                
-                path = root.join(criteria.getJoinName(), joinType)
-                        .get(criteria.getFieldName());
+                path = this.findJoin(joinName).get(fieldName);
             }
             return path;
         }
+        
+        /**
+         * Finds the join of a join path, creating it (and its parent joins) only the first time, so every
+         * association is joined once no matter how many criteria use it. Nested associations are separated
+         * by dots (e.g. <code>order.customer.address</code>), and each of them uses the join type defined
+         * for its own path
+         * @param joinPath the path of the join
+         * @return the join
+         */
+        public From<?, ?> findJoin(String joinPath) {
+            From<?, ?> join = joins.get(joinPath);
+            
+            if(join == null) {
+                int separator = joinPath.lastIndexOf('.');
+                From<?, ?> parent = (separator < 0) ? root : this.findJoin(joinPath.substring(0, separator));
+                
+                // The join map is only read, so the same builder can be converted in several threads
+                join = parent.join(joinPath.substring(separator + 1), joinMap.getOrDefault(joinPath, JoinType.INNER));
+                joins.put(joinPath, join);
+            }
+            
+            return join;
+        }
+    }
+    
+    
+    
+    @Override
+    public String toString() {
+        String result = joinMap.isEmpty() ? String.valueOf(filter) : new TreeMap<>(joinMap) + " " + filter;
+        
+        if(!fetchMap.isEmpty()) {
+            result += " fetch " + fetchMap;
+        }
+        
+        if(entityGraph != null) {
+            result += " graph " + entityGraph;
+        }
+        
+        return result;
     }
 }
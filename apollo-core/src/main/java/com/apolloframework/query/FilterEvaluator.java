@@ -0,0 +1,613 @@
+package com.apolloframework.query;
+
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+import javax.persistence.criteria.JoinType;
+import javax.persistence.criteria.Predicate.BooleanOperator;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Compiles {@link FilterCriteria} trees into {@link Predicate} objects that are evaluated in memory,
+ * so the same filters sent to the database can also be applied to objects already loaded (e.g. cached lists).
+ * The filters follow the semantics of SQL: a comparison with <code>null</code> is unknown, and <code>NOT</code>
+ * of an unknown result is still unknown, so only the objects whose result is true are accepted. Numbers are
+ * compared by value regardless of their type. As in the database, every join path is joined once and shared by all
+ * the criteria on that path, so the whole filter is evaluated for every combination of the joined elements, and
+ * the object matches when any combination matches. A missing association (or an empty collection) has no elements,
+ * so the object only matches through a {@link JoinType#LEFT} join, where the fields of the association are
+ * <code>null</code>. Type filters compare the exact class of the object, so proxies must be unwrapped.
+ * The properties are read through getters (or fields when there is no getter) with {@link MethodHandle}s,
+ * which are looked up once for every class and property
+ * @author amarenco
+ *
+ */
+public final class FilterEvaluator {
+    /** Result of a condition that is false */
+    private static final int FALSE = 0;
+    /** Result of a condition that is true */
+    private static final int TRUE = 1;
+    /** Result of a condition that is unknown (e.g. a comparison with <code>null</code>) */
+    private static final int UNKNOWN = 2;
+    
+    /** The joined elements of a filter without joins */
+    private static final Object[] NO_JOINS = new Object[0];
+    
+    /** The type of every accessor, so they can be invoked exactly */
+    private static final MethodType ACCESSOR_TYPE = MethodType.methodType(Object.class, Object.class);
+    
+    /** The property accessors of every class */
+    private static final ClassValue<ConcurrentMap<String, MethodHandle>> ACCESSORS = new ClassValue<ConcurrentMap<String, MethodHandle>>() {
+        @Override
+        protected ConcurrentMap<String, MethodHandle> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+    
+    
+    /**
+     * Utility class
+     */
+    private FilterEvaluator() {
+    }
+    
+    
+    /**
+     * Compiles the filters of a builder, using its join types
+     * @param filters the filters, or <code>null</code> to accept every object
+     * @return the predicate, that can be reused and evaluated concurrently
+     */
+    public static <T> Predicate<T> compile(FilterBuilder filters) {
+        return (filters != null) ?
+                compile(filters.filter, filters.joinMap) :
+                    compile(null, Collections.emptyMap());
+    }
+    
+    
+    /**
+     * Compiles a criteria, where every join is a {@link JoinType#INNER} join
+     * @param criteria the criteria, or <code>null</code> to accept every object
+     * @return the predicate, that can be reused and evaluated concurrently
+     */
+    public static <T> Predicate<T> compile(FilterCriteria criteria) {
+        return compile(criteria, Collections.emptyMap());
+    }
+    
+    
+    /**
+     * Compiles a criteria
+     * @param criteria the criteria, or <code>null</code> to accept every object
+     * @param joinTypes the type of every join
+     * @return the predicate
+     */
+    private static <T> Predicate<T> compile(FilterCriteria criteria, Map<String, JoinType> joinTypes) {
+        Predicate<T> predicate;
+        
+        if(criteria != null) {
+            List<String> paths = new ArrayList<>();
+            collectJoins(criteria, paths);
+            
+            Condition condition = toCondition(criteria, paths);
+            Join[] joins = new Join[paths.size()];
+            for(int i = 0; i < joins.length; i++) {
+                joins[i] = new Join(paths.get(i), paths, joinTypes);
+            }
+            
+            predicate = (joins.length == 0) ?
+                    target -> condition.evaluate(target, NO_JOINS) == TRUE :
+                        target -> bind(condition, joins, target, new Object[joins.length], 0) == TRUE;
+        } else {
+            predicate = target -> true;
+        }
+        
+        return predicate;
+    }
+    
+    
+    /**
+     * Collects the join paths of a criteria, where every path comes after its parent path
+     * @param criteria the criteria
+     * @param paths the join paths found so far
+     */
+    private static void collectJoins(FilterCriteria criteria, List<String> paths) {
+        if(criteria instanceof BooleanFilterCriteria) {
+            ((BooleanFilterCriteria)criteria).getFilters().forEach(f -> collectJoins(f, paths));
+        } else if(criteria instanceof NotFilterCriteria) {
+            collectJoins(((NotFilterCriteria)criteria).getFilter(), paths);
+        } else if((criteria instanceof UnaryFilterCriteria) || (criteria instanceof BinaryFilterCriteria)) {
+            String joinName = ((BaseFilterCriteria)criteria).getJoinName();
+            
+            if(StringUtils.isNotBlank(joinName)) {
+                String[] names = StringUtils.split(joinName, '.');
+                for(int i = 0; i < names.length; i++) {
+                    String path = StringUtils.join(names, '.', 0, i + 1);
+                    if(!paths.contains(path)) {
+                        paths.add(path);
+                    }
+                }
+            }
+        }
+    }
+    
+    
+    /**
+     * Converts a criteria into a condition
+     * @param criteria the criteria
+     * @param paths the join paths of the whole filter
+     * @return the condition
+     */
+    private static Condition toCondition(FilterCriteria criteria, List<String> paths) {
+        Condition condition;
+        
+        if(criteria instanceof BooleanFilterCriteria) {
+            BooleanFilterCriteria boolFilter = (BooleanFilterCriteria)criteria;
+            Condition[] conditions = boolFilter.getFilters().stream()
+                    .map(f -> toCondition(f, paths))
+                    .toArray(Condition[]::new);
+            
+            condition = (boolFilter.getOperator() == BooleanOperator.AND) ?
+                    (target, joined) -> and(conditions, target, joined) :
+                        (target, joined) -> or(conditions, target, joined);
+        } else if(criteria instanceof NotFilterCriteria) {
+            Condition inner = toCondition(((NotFilterCriteria)criteria).getFilter(), paths);
+            condition = (target, joined) -> not(inner.evaluate(target, joined));
+        } else if(criteria instanceof TypeFilterCriteria) {
+            Class<?> type = ((TypeFilterCriteria)criteria).clazzType;
+            boolean negative = ((TypeFilterCriteria)criteria).getOperation() == FilterOperation.NOT_TYPE;
+            condition = (target, joined) -> ((target.getClass() == type) != negative) ? TRUE : FALSE;
+        } else if((criteria instanceof UnaryFilterCriteria) || (criteria instanceof BinaryFilterCriteria)) {
+            BaseFilterCriteria baseFilter = (BaseFilterCriteria)criteria;
+            String joinName = StringUtils.isBlank(baseFilter.getJoinName()) ? null : StringUtils.join(StringUtils.split(baseFilter.getJoinName(), '.'), '.');
+            condition = new FieldCondition(paths.indexOf(joinName), baseFilter.getFieldName(), toValueTest(baseFilter));
+        } else {
+            throw new IllegalArgumentException("Unsupported filter criteria " + criteria.getClass().getName());
+        }
+        
+        return condition;
+    }
+    
+    
+    /**
+     * Converts the operation of a criteria into a test of the value of its field
+     * @param criteria the criteria
+     * @return the test
+     */
+    private static ValueTest toValueTest(BaseFilterCriteria criteria) {
+        ValueTest test;
+        Object value = (criteria instanceof BinaryFilterCriteria) ? ((BinaryFilterCriteria)criteria).getValue() : null;
+        
+        switch(criteria.getOperation()) {
+        case NULL:
+            test = actual -> (actual == null) ? TRUE : FALSE;
+            break;
+        case NOT_NULL:
+            test = actual -> (actual != null) ? TRUE : FALSE;
+            break;
+        case EQUALS:
+            Object expected = normalize(value);
+            test = actual -> ((actual == null) || (expected == null)) ? UNKNOWN : (expected.equals(normalize(actual)) ? TRUE : FALSE);
+            break;
+        case NOT_EQUALS:
+            Object unexpected = normalize(value);
+            test = actual -> ((actual == null) || (unexpected == null)) ? UNKNOWN : (unexpected.equals(normalize(actual)) ? FALSE : TRUE);
+            break;
+        case GREATER_THAN:
+            Object lowerBound = normalize(value);
+            test = actual -> (actual == null) ? UNKNOWN : ((compare(normalize(actual), lowerBound) > 0) ? TRUE : FALSE);
+            break;
+        case GREATER_THAN_OR_EQUALS:
+            Object inclusiveLowerBound = normalize(value);
+            test = actual -> (actual == null) ? UNKNOWN : ((compare(normalize(actual), inclusiveLowerBound) >= 0) ? TRUE : FALSE);
+            break;
+        case LESS_THAN:
+            Object upperBound = normalize(value);
+            test = actual -> (actual == null) ? UNKNOWN : ((compare(normalize(actual), upperBound) < 0) ? TRUE : FALSE);
+            break;
+        case LESS_THAN_OR_EQUALS:
+            Object inclusiveUpperBound = normalize(value);
+            test = actual -> (actual == null) ? UNKNOWN : ((compare(normalize(actual), inclusiveUpperBound) <= 0) ? TRUE : FALSE);
+            break;
+        case BETWEEN:
+            Object from = normalize(((List<?>)value).get(0));
+            Object to = normalize(((List<?>)value).get(1));
+            test = actual -> {
+                Object normalized = normalize(actual);
+                return (actual == null) ? UNKNOWN : (((compare(normalized, from) >= 0) && (compare(normalized, to) <= 0)) ? TRUE : FALSE);
+            };
+            break;
+        case LIKE:
+        case STARTS_WITH:
+        case ENDS_WITH:
+        case CONTAINS:
+        case LIKE_IGNORE_CASE:
+        case STARTS_WITH_IGNORE_CASE:
+        case ENDS_WITH_IGNORE_CASE:
+        case CONTAINS_IGNORE_CASE:
+            Pattern regex = LikePatterns.toRegex(LikePatterns.toPattern(criteria.getOperation(), value));
+            boolean ignoreCase = LikePatterns.isIgnoreCase(criteria.getOperation());
+            test = actual -> (actual == null) ? UNKNOWN :
+                (regex.matcher(ignoreCase ? actual.toString().toLowerCase(Locale.ROOT) : actual.toString()).matches() ? TRUE : FALSE);
+            break;
+        case IN:
+            Collection<?> values = (value instanceof Collection) ? (Collection<?>)value : Collections.singletonList(value);
+            Set<Object> expectedValues = new HashSet<>();
+            values.forEach(v -> expectedValues.add(normalize(v)));
+            
+            // A null value of the list makes the values not found unknown
+            int notFound = expectedValues.remove(null) ? UNKNOWN : FALSE;
+            test = actual -> (actual == null) ? UNKNOWN : (expectedValues.contains(normalize(actual)) ? TRUE : notFound);
+            break;
+        default:
+            throw new IllegalArgumentException("Incorrect filter operation");
+        }
+        
+        return test;
+    }
+    
+    
+    /**
+     * Normalizes a value so numbers of different types are equal when they have the same value
+     * @param value the value
+     * @return the normalized value: integral numbers as {@link Long}, NaN and infinite values as {@link Double},
+     * and other numbers as {@link BigDecimal}
+     */
+    static Object normalize(Object value) {
+        Object result = value;
+        
+        if((value instanceof Long) || (value instanceof Integer) || (value instanceof Short) || (value instanceof Byte)) {
+            result = ((Number)value).longValue();
+        } else if(((value instanceof Double) || (value instanceof Float)) && !Double.isFinite(((Number)value).doubleValue())) {
+            result = ((Number)value).doubleValue();
+        } else if(value instanceof Number) {
+            BigDecimal decimal;
+            if(value instanceof BigDecimal) {
+                decimal = (BigDecimal)value;
+            } else if(value instanceof BigInteger) {
+                decimal = new BigDecimal((BigInteger)value);
+            } else {
+                decimal = BigDecimal.valueOf(((Number)value).doubleValue());
+            }
+            
+            decimal = (decimal.signum() == 0) ? BigDecimal.ZERO : decimal.stripTrailingZeros();
+            result = ((decimal.scale() <= 0) && (decimal.precision() - decimal.scale() < 19)) ? (Object)decimal.longValue() : decimal;
+        }
+        
+        return result;
+    }
+    
+    
+    /**
+     * Compares two normalized values, where numbers are compared by value. As in the databases that support them,
+     * NaN is greater than any other number, and the infinite values are greater or less than any finite number
+     * @param actual the value of the field
+     * @param bound the value of the filter
+     * @return a negative number, zero or a positive number if the value of the field is less than,
+     * equal to, or greater than the value of the filter
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static int compare(Object actual, Object bound) {
+        int result;
+        
+        if((actual instanceof Number) && (bound instanceof Number) && (actual.getClass() != bound.getClass())) {
+            // Only the NaN and infinite values are normalized as doubles
+            if(actual instanceof Double) {
+                result = Double.compare((Double)actual, 0);
+            } else if(bound instanceof Double) {
+                result = -Double.compare((Double)bound, 0);
+            } else {
+                result = new BigDecimal(actual.toString()).compareTo(new BigDecimal(bound.toString()));
+            }
+        } else {
+            result = ((Comparable)actual).compareTo(bound);
+        }
+        
+        return result;
+    }
+    
+    
+    /**
+     * @param conditions the conditions
+     * @param target the object to evaluate
+     * @param joined the joined elements
+     * @return the conjunction of the conditions
+     */
+    private static int and(Condition[] conditions, Object target, Object[] joined) {
+        int result = TRUE;
+        
+        for(int i = 0; (i < conditions.length) && (result != FALSE); i++) {
+            int value = conditions[i].evaluate(target, joined);
+            if(value != TRUE) {
+                result = value;
+            }
+        }
+        
+        return result;
+    }
+    
+    
+    /**
+     * @param conditions the conditions
+     * @param target the object to evaluate
+     * @param joined the joined elements
+     * @return the disjunction of the conditions
+     */
+    private static int or(Condition[] conditions, Object target, Object[] joined) {
+        int result = FALSE;
+        
+        for(int i = 0; (i < conditions.length) && (result != TRUE); i++) {
+            int value = conditions[i].evaluate(target, joined);
+            if(value != FALSE) {
+                result = value;
+            }
+        }
+        
+        return result;
+    }
+    
+    
+    /**
+     * @param value the result of a condition
+     * @return the negation of the result
+     */
+    private static int not(int value) {
+        return (value == UNKNOWN) ? UNKNOWN : ((value == TRUE) ? FALSE : TRUE);
+    }
+    
+    
+    /**
+     * Binds every join path to each of its elements in turn, and evaluates the condition for every
+     * combination of the joined elements, as the rows of a query with the same joins
+     * @param condition the condition
+     * @param joins the joins, where every join comes after its parent
+     * @param target the object to evaluate
+     * @param joined the elements bound to the joins
+     * @param depth the index of the join to bind
+     * @return {@link #TRUE} if any combination matches, otherwise {@link #UNKNOWN} if the result
+     * of any combination is unknown, or {@link #FALSE}
+     */
+    private static int bind(Condition condition, Join[] joins, Object target, Object[] joined, int depth) {
+        int result;
+        
+        if(depth == joins.length) {
+            result = condition.evaluate(target, joined);
+        } else {
+            Join join = joins[depth];
+            Object owner = (join.parent < 0) ? target : joined[join.parent];
+            Object value = (owner != null) ? join.association.get(owner) : null;
+            
+            result = FALSE;
+            boolean found = false;
+            
+            for(Object element : (value instanceof Collection) ? (Collection<?>)value : Collections.singletonList(value)) {
+                if(element != null) {
+                    found = true;
+                    joined[depth] = element;
+                    
+                    int elementResult = bind(condition, joins, target, joined, depth + 1);
+                    if(elementResult == TRUE) {
+                        return TRUE;
+                    } else if(elementResult == UNKNOWN) {
+                        result = UNKNOWN;
+                    }
+                }
+            }
+            
+            // A missing association has only null values through an outer join, and no rows at all otherwise
+            if(!found && join.outer) {
+                joined[depth] = null;
+                result = bind(condition, joins, target, joined, depth + 1);
+            }
+        }
+        
+        return result;
+    }
+    
+    
+    /**
+     * Finds the accessor of a property, looking it up only the first time
+     * @param type the class of the object
+     * @param property the name of the property
+     * @return the accessor, of type <code>(Object)Object</code>
+     */
+    private static MethodHandle findAccessor(Class<?> type, String property) {
+        return ACCESSORS.get(type).computeIfAbsent(property, p -> lookupAccessor(type, p));
+    }
+    
+    
+    /**
+     * Looks up the getter of a property, or its field if there is no getter
+     * @param type the class of the object
+     * @param property the name of the property
+     * @return the accessor, of type <code>(Object)Object</code>
+     */
+    private static MethodHandle lookupAccessor(Class<?> type, String property) {
+        try
+        {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            
+            for(PropertyDescriptor descriptor : Introspector.getBeanInfo(type).getPropertyDescriptors()) {
+                Method getter = descriptor.getReadMethod();
+                
+                if(descriptor.getName().equals(property) && (getter != null)) {
+                    getter.setAccessible(true);
+                    return lookup.unreflect(getter).asType(ACCESSOR_TYPE);
+                }
+            }
+            
+            for(Class<?> current = type; current != null; current = current.getSuperclass()) {
+                for(Field field : current.getDeclaredFields()) {
+                    if(field.getName().equals(property)) {
+                        field.setAccessible(true);
+                        return lookup.unreflectGetter(field).asType(ACCESSOR_TYPE);
+                    }
+                }
+            }
+        }
+        catch(IntrospectionException | IllegalAccessException ex) {
+            throw new IllegalArgumentException("Cannot read the property " + property + " of " + type.getName(), ex);
+        }
+        
+        throw new IllegalArgumentException("Unknown property " + property + " of " + type.getName());
+    }
+    
+    
+    
+    
+    /** Condition compiled from a criteria */
+    @FunctionalInterface
+    private interface Condition {
+        /**
+         * @param target the object to evaluate
+         * @param joined the elements bound to every join path, or <code>null</code> for missing associations of outer joins
+         * @return {@link FilterEvaluator#TRUE}, {@link FilterEvaluator#FALSE} or {@link FilterEvaluator#UNKNOWN}
+         */
+        int evaluate(Object target, Object[] joined);
+    }
+    
+    
+    
+    
+    /** Test of the value of a field */
+    @FunctionalInterface
+    private interface ValueTest {
+        /**
+         * @param actual the value of the field
+         * @return {@link FilterEvaluator#TRUE}, {@link FilterEvaluator#FALSE} or {@link FilterEvaluator#UNKNOWN}
+         */
+        int test(Object actual);
+    }
+    
+    
+    
+    
+    /** Accessor of a property that keeps the handle of the last class read */
+    private static final class PropertyAccessor {
+        private final String property;
+        private volatile CachedHandle cache;
+        
+        /**
+         * Default constructor
+         * @param property the name of the property
+         */
+        public PropertyAccessor(String property) {
+            this.property = property;
+        }
+        
+        /**
+         * @param target the object
+         * @return the value of the property
+         */
+        public Object get(Object target) {
+            CachedHandle cached = cache;
+            if((cached == null) || (cached.type != target.getClass())) {
+                cached = new CachedHandle(target.getClass(), findAccessor(target.getClass(), property));
+                cache = cached;
+            }
+            
+            try
+            {
+                return (Object)cached.handle.invokeExact(target);
+            }
+            catch(RuntimeException | Error ex) {
+                throw ex;
+            }
+            catch(Throwable ex) {
+                throw new IllegalStateException("Cannot read the property " + property + " of " + target.getClass().getName(), ex);
+            }
+        }
+    }
+    
+    
+    
+    
+    /** The accessor of a property for a class */
+    private static final class CachedHandle {
+        private final Class<?> type;
+        private final MethodHandle handle;
+        
+        /**
+         * Default constructor
+         * @param type the class
+         * @param handle the accessor of the property
+         */
+        public CachedHandle(Class<?> type, MethodHandle handle) {
+            this.type = type;
+            this.handle = handle;
+        }
+    }
+    
+    
+    
+    
+    /** Join path of a filter, bound to each of its elements in turn */
+    private static final class Join {
+        private final int parent;
+        private final PropertyAccessor association;
+        private final boolean outer;
+        
+        /**
+         * Default constructor
+         * @param path the join path
+         * @param paths the join paths of the filter, where the parent path comes before this one
+         * @param joinTypes the type of every join
+         */
+        public Join(String path, List<String> paths, Map<String, JoinType> joinTypes) {
+            int separator = path.lastIndexOf('.');
+            
+            this.parent = (separator < 0) ? -1 : paths.indexOf(path.substring(0, separator));
+            this.association = new PropertyAccessor(path.substring(separator + 1));
+            this.outer = joinTypes.get(path) == JoinType.LEFT;
+        }
+    }
+    
+    
+    
+    
+    /** Condition on the value of a field of the object or of the elements bound to a join path */
+    private static final class FieldCondition implements Condition {
+        private final int join;
+        private final PropertyAccessor field;
+        private final ValueTest test;
+        
+        /**
+         * Default constructor
+         * @param join the index of the join path, or <code>-1</code> for fields of the object
+         * @param fieldName the name of the field
+         * @param test the test of the value of the field
+         */
+        public FieldCondition(int join, String fieldName, ValueTest test) {
+            this.join = join;
+            this.field = new PropertyAccessor(fieldName);
+            this.test = test;
+        }
+        
+        @Override
+        public int evaluate(Object target, Object[] joined) {
+            Object source = (join < 0) ? target : joined[join];
+            
+            // The fields of a missing association of an outer join are null
+            return test.test((source != null) ? field.get(source) : null);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.apolloframework.query;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Pool of canonical {@link FilterCriteria} instances. Equal criteria are replaced by a single shared instance,
+ * including their common subtrees, so the filters built for every request (e.g. the same tenant or status clauses)
+ * do not keep duplicated copies in the caches and are compared by identity in the common case.
+ * The pool only keeps weak references, so the criteria not used anymore are garbage collected
+ * @author amarenco
+ *
+ */
+public final class FilterInterner {
+    /** The canonical instances */
+    private static final Map<FilterCriteria, WeakReference<FilterCriteria>> POOL = new WeakHashMap<>();
+    
+    
+    /**
+     * Utility class
+     */
+    private FilterInterner() {
+    }
+    
+    
+    /**
+     * Returns the canonical instance of a criteria, interning its subtrees
+     * @param criteria the criteria, or <code>null</code>
+     * @return the canonical instance, equal to the criteria
+     */
+    public static FilterCriteria intern(FilterCriteria criteria) {
+        FilterCriteria result = (criteria != null) ? find(criteria) : null;
+        
+        if((result == null) && (criteria != null)) {
+            FilterCriteria canonical = criteria;
+            
+            if(criteria instanceof BooleanFilterCriteria) {
+                BooleanFilterCriteria boolFilter = (BooleanFilterCriteria)criteria;
+                List<FilterCriteria> filters = new ArrayList<>();
+                boolean changed = false;
+                
+                for(FilterCriteria filter : boolFilter.getFilters()) {
+                    FilterCriteria interned = intern(filter);
+                    changed = changed || (interned != filter);
+                    filters.add(interned);
+                }
+                
+                if(changed) {
+                    canonical = new BooleanFilterCriteria(boolFilter.getOperator(), filters);
+                }
+            } else if(criteria instanceof NotFilterCriteria) {
+                FilterCriteria inner = ((NotFilterCriteria)criteria).getFilter();
+                FilterCriteria interned = intern(inner);
+                
+                if(interned != inner) {
+                    canonical = new NotFilterCriteria(interned);
+                }
+            }
+            
+            synchronized(POOL) {
+                result = find(canonical);
+                
+                if(result == null) {
+                    POOL.put(canonical, new WeakReference<>(canonical));
+                    result = canonical;
+                }
+            }
+        }
+        
+        return result;
+    }
+    
+    
+    /**
+     * @param criteria the criteria
+     * @return the canonical instance of the criteria, or <code>null</code> if it is not interned
+     */
+    private static FilterCriteria find(FilterCriteria criteria) {
+        synchronized(POOL) {
+            WeakReference<FilterCriteria> reference = POOL.get(criteria);
+            return (reference != null) ? reference.get() : null;
+        }
+    }
+    
+    
+    /**
+     * @return the number of canonical instances in the pool
+     */
+    public static int size() {
+        synchronized(POOL) {
+            return POOL.size();
+        }
+    }
+}
@@ -7,5 +7,18 @@ public enum FilterOperation {
     NOT_NULL,
     IN,
     TYPE,
-    NOT_TYPE
+    NOT_TYPE,
+    GREATER_THAN,
+    GREATER_THAN_OR_EQUALS,
+    LESS_THAN,
+    LESS_THAN_OR_EQUALS,
+    BETWEEN,
+    LIKE,
+    STARTS_WITH,
+    ENDS_WITH,
+    CONTAINS,
+    LIKE_IGNORE_CASE,
+    STARTS_WITH_IGNORE_CASE,
+    ENDS_WITH_IGNORE_CASE,
+    CONTAINS_IGNORE_CASE
 }
\ No newline at end of file
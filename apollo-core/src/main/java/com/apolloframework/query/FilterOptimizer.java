@@ -0,0 +1,289 @@
+package com.apolloframework.query;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.persistence.criteria.Predicate.BooleanOperator;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Simplification of {@link FilterCriteria} trees before they are converted into predicates or JPQL.
+ * The optimizer keeps the semantics of SQL (a comparison with <code>null</code> is unknown), so it only applies
+ * the rewrites that are valid with three-valued logic:
+ * <ul>
+ * <li>Nested filters with the same boolean operator are flattened, and filters with a single clause are unwrapped</li>
+ * <li>Duplicated clauses are removed, comparing them by their structural equality</li>
+ * <li><code>NOT</code> is pushed down to the leaves with De Morgan's laws, and double negations are removed
+ * (e.g. <code>not (a = 1)</code> is rewritten as <code>a &lt;&gt; 1</code>)</li>
+ * <li><code>a = 1 or a = 2 or a in (3, 4)</code> is folded into <code>a in (1, 2, 3, 4)</code></li>
+ * <li>Empty <code>IN</code> lists are always false, and short-circuit the filters that contain them</li>
+ * </ul>
+ * An empty {@link BooleanOperator#AND} is always true and an empty {@link BooleanOperator#OR} is always false.
+ * The clauses with joins are never discarded when they are absorbed by a constant, since their inner joins
+ * also filter the entities
+ * @author amarenco
+ *
+ */
+public final class FilterOptimizer {
+    
+    /**
+     * Utility class
+     */
+    private FilterOptimizer() {
+    }
+    
+    
+    /**
+     * Simplifies a criteria, without modifying it
+     * @param criteria the criteria, or <code>null</code>
+     * @return the simplified criteria, or <code>null</code> if the criteria is <code>null</code>
+     */
+    public static FilterCriteria optimize(FilterCriteria criteria) {
+        return (criteria != null) ? simplify(criteria, false) : null;
+    }
+    
+    
+    /**
+     * Simplifies a criteria
+     * @param criteria the criteria
+     * @param negate <code>true</code> to simplify the negation of the criteria
+     * @return the simplified criteria
+     */
+    private static FilterCriteria simplify(FilterCriteria criteria, boolean negate) {
+        FilterCriteria result;
+        
+        if(criteria instanceof NotFilterCriteria) {
+            result = simplify(((NotFilterCriteria)criteria).getFilter(), !negate);
+        } else if(criteria instanceof BooleanFilterCriteria) {
+            BooleanFilterCriteria boolFilter = (BooleanFilterCriteria)criteria;
+            BooleanOperator operator = boolFilter.getOperator();
+            List<FilterCriteria> filters = new ArrayList<>();
+            
+            for(FilterCriteria filter : boolFilter.getFilters()) {
+                filters.add(simplify(filter, negate));
+            }
+            
+            // De Morgan's laws
+            if(negate) {
+                operator = (operator == BooleanOperator.AND) ? BooleanOperator.OR : BooleanOperator.AND;
+            }
+            
+            result = combine(operator, filters);
+        } else if(criteria instanceof TypeFilterCriteria) {
+            TypeFilterCriteria typeFilter = (TypeFilterCriteria)criteria;
+            result = negate ?
+                    new TypeFilterCriteria(typeFilter.clazzType, typeFilter.getOperation() == FilterOperation.TYPE) :
+                        criteria;
+        } else if(criteria instanceof UnaryFilterCriteria) {
+            UnaryFilterCriteria unaryFilter = (UnaryFilterCriteria)criteria;
+            result = negate ?
+                    new UnaryFilterCriteria(unaryFilter.getJoinName(), unaryFilter.getFieldName(),
+                            (unaryFilter.getOperation() == FilterOperation.NULL) ? FilterOperation.NOT_NULL : FilterOperation.NULL) :
+                        criteria;
+        } else if(criteria instanceof BinaryFilterCriteria) {
+            result = simplifyBinary((BinaryFilterCriteria)criteria, negate);
+        } else {
+            result = negate ? new NotFilterCriteria(criteria) : criteria;
+        }
+        
+        return result;
+    }
+    
+    
+    /**
+     * Simplifies a binary criteria
+     * @param criteria the criteria
+     * @param negate <code>true</code> to simplify the negation of the criteria
+     * @return the simplified criteria
+     */
+    private static FilterCriteria simplifyBinary(BinaryFilterCriteria criteria, boolean negate) {
+        FilterCriteria result;
+        FilterOperation operation = criteria.getOperation();
+        Object value = criteria.getValue();
+        
+        if(operation == FilterOperation.IN) {
+            Set<Object> values = new LinkedHashSet<>((value instanceof Collection) ? (Collection<?>)value : Collections.singletonList(value));
+            
+            if(values.isEmpty() && StringUtils.isBlank(criteria.getJoinName())) {
+                result = negate ? Filters.and() : Filters.or();
+            } else if((values.size() == 1) && (values.iterator().next() != null)) {
+                result = new BinaryFilterCriteria(criteria.getJoinName(), criteria.getFieldName(),
+                        negate ? FilterOperation.NOT_EQUALS : FilterOperation.EQUALS, values.iterator().next());
+            } else {
+                result = negate ? new NotFilterCriteria(criteria) : criteria;
+            }
+        } else if(negate) {
+            FilterOperation negation = negate(operation);
+            result = (negation != null) ?
+                    new BinaryFilterCriteria(criteria.getJoinName(), criteria.getFieldName(), negation, value) :
+                        new NotFilterCriteria(criteria);
+        } else {
+            result = criteria;
+        }
+        
+        return result;
+    }
+    
+    
+    /**
+     * Returns the operation that matches the negation of a binary operation, which must also
+     * be unknown for <code>null</code> values
+     * @param operation the operation
+     * @return the negated operation, or <code>null</code> if there is none
+     */
+    private static FilterOperation negate(FilterOperation operation) {
+        FilterOperation result;
+        
+        switch(operation) {
+        case EQUALS:
+            result = FilterOperation.NOT_EQUALS;
+            break;
+        case NOT_EQUALS:
+            result = FilterOperation.EQUALS;
+            break;
+        case GREATER_THAN:
+            result = FilterOperation.LESS_THAN_OR_EQUALS;
+            break;
+        case GREATER_THAN_OR_EQUALS:
+            result = FilterOperation.LESS_THAN;
+            break;
+        case LESS_THAN:
+            result = FilterOperation.GREATER_THAN_OR_EQUALS;
+            break;
+        case LESS_THAN_OR_EQUALS:
+            result = FilterOperation.GREATER_THAN;
+            break;
+        default:
+            result = null;
+        }
+        
+        return result;
+    }
+    
+    
+    /**
+     * Combines simplified criteria with a boolean operator
+     * @param operator the operator
+     * @param filters the simplified criteria
+     * @return the combined criteria
+     */
+    private static FilterCriteria combine(BooleanOperator operator, List<FilterCriteria> filters) {
+        Set<FilterCriteria> clauses = new LinkedHashSet<>();
+        boolean absorbed = false;
+        
+        for(FilterCriteria filter : filters) {
+            if((filter instanceof BooleanFilterCriteria) && (((BooleanFilterCriteria)filter).getOperator() == operator)) {
+                // The nested clauses are already simplified, and an empty filter is the identity of the operator
+                ((BooleanFilterCriteria)filter).getFilters().forEach(f -> clauses.add(f));
+            } else {
+                absorbed = absorbed || isEmpty(filter);
+                clauses.add(filter);
+            }
+        }
+        
+        List<FilterCriteria> result = new ArrayList<>(clauses);
+        
+        if(absorbed && ((operator == BooleanOperator.AND) || result.stream().noneMatch(FilterOptimizer::hasJoins))) {
+            // false for AND, true for OR
+            result.clear();
+            result.add((operator == BooleanOperator.AND) ? Filters.or() : Filters.and());
+        } else if(operator == BooleanOperator.OR) {
+            result = foldIn(result);
+        }
+        
+        return (result.size() == 1) ? result.get(0) : new BooleanFilterCriteria(operator, result);
+    }
+    
+    
+    /**
+     * Folds the <code>EQUALS</code> and <code>IN</code> clauses of a disjunction on the same field into a single <code>IN</code>
+     * @param filters the clauses of the disjunction
+     * @return the folded clauses
+     */
+    private static List<FilterCriteria> foldIn(List<FilterCriteria> filters) {
+        Map<String, List<BinaryFilterCriteria>> fields = new LinkedHashMap<>();
+        
+        for(FilterCriteria filter : filters) {
+            if(isFoldable(filter)) {
+                fields.computeIfAbsent(((BinaryFilterCriteria)filter).getQualifiedFieldName(), f -> new ArrayList<>()).add((BinaryFilterCriteria)filter);
+            }
+        }
+        
+        List<FilterCriteria> result = new ArrayList<>();
+        for(FilterCriteria filter : filters) {
+            if(!isFoldable(filter)) {
+                result.add(filter);
+            } else {
+                List<BinaryFilterCriteria> clauses = fields.get(((BinaryFilterCriteria)filter).getQualifiedFieldName());
+                
+                if(clauses.size() == 1) {
+                    result.add(filter);
+                } else if(clauses.get(0) == filter) {
+                    Set<Object> values = new LinkedHashSet<>();
+                    for(BinaryFilterCriteria clause : clauses) {
+                        if(clause.getOperation() == FilterOperation.IN) {
+                            values.addAll((Collection<?>)clause.getValue());
+                        } else {
+                            values.add(clause.getValue());
+                        }
+                    }
+                    
+                    result.add(new BinaryFilterCriteria(clauses.get(0).getJoinName(), clauses.get(0).getFieldName(), FilterOperation.IN, new ArrayList<>(values)));
+                }
+            }
+        }
+        
+        return result;
+    }
+    
+    
+    /**
+     * @param filter the criteria
+     * @return <code>true</code> if the criteria can be folded into an <code>IN</code>
+     */
+    private static boolean isFoldable(FilterCriteria filter) {
+        return (filter instanceof BinaryFilterCriteria) &&
+                ((((BinaryFilterCriteria)filter).getOperation() == FilterOperation.EQUALS) ||
+                        ((((BinaryFilterCriteria)filter).getOperation() == FilterOperation.IN) && (((BinaryFilterCriteria)filter).getValue() instanceof Collection)));
+    }
+    
+    
+    /**
+     * @param filter the criteria
+     * @return <code>true</code> if the criteria is an empty boolean filter
+     */
+    private static boolean isEmpty(FilterCriteria filter) {
+        return (filter instanceof BooleanFilterCriteria) && ((BooleanFilterCriteria)filter).getFilters().isEmpty();
+    }
+    
+    
+    /**
+     * Determines if a criteria uses joins, where unknown criteria are assumed to use them
+     * @param criteria the criteria
+     * @return <code>true</code> if the criteria uses joins
+     */
+    private static boolean hasJoins(FilterCriteria criteria) {
+        boolean result;
+        
+        if(criteria instanceof BooleanFilterCriteria) {
+            result = ((BooleanFilterCriteria)criteria).getFilters().stream().anyMatch(FilterOptimizer::hasJoins);
+        } else if(criteria instanceof NotFilterCriteria) {
+            result = hasJoins(((NotFilterCriteria)criteria).getFilter());
+        } else if(criteria instanceof TypeFilterCriteria) {
+            result = false;
+        } else if(criteria instanceof BaseFilterCriteria) {
+            result = StringUtils.isNotBlank(((BaseFilterCriteria)criteria).getJoinName());
+        } else {
+            result = true;
+        }
+        
+        return result;
+    }
+}
@@ -0,0 +1,397 @@
+package com.apolloframework.query;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+import javax.persistence.criteria.JoinType;
+import javax.persistence.criteria.Predicate.BooleanOperator;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Structural signature of the filters of a {@link FilterBuilder}, made of the fields, operations,
+ * joins and sizes of the <code>IN</code> lists, but not of the values. Filters with the same signature
+ * are rendered as the same parameterized JPQL, so the query can be compiled once and reused by only
+ * binding the {@link #getArguments() arguments}.
+ * The <code>IN</code> lists are normalized with {@link InLists}, so lists of similar sizes share the same signature,
+ * and the filters are simplified with the {@link FilterOptimizer} before computing the signature
+ * @author amarenco
+ *
+ */
+public final class FilterSignature {
+    /** Pattern of the field and join names that can be rendered in JPQL */
+    private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_$][A-Za-z0-9_$]*");
+    
+    /** The structural signature */
+    private final String signature;
+    /** The values of the filters, in the same order as the parameters of the JPQL */
+    private final List<Object> arguments;
+    /** The filters */
+    private final FilterCriteria filter;
+    /** The join types of every join used by the filters */
+    private final Map<String, JoinType> joins;
+    /** The position of every join, used to name its alias */
+    private final Map<String, Integer> joinPositions = new HashMap<>();
+    /** The settings of the <code>IN</code> lists */
+    private final InLists inLists;
+    /** The shapes of the <code>IN</code> lists, as defined by {@link InLists#shapeOf(List)} */
+    private final List<Long> inListShapes;
+    
+    
+    /**
+     * Default constructor
+     * @param signature the structural signature
+     * @param arguments the values of the filters
+     * @param filter the filters
+     * @param joins the join types of every join used by the filters
+     * @param inLists the settings of the <code>IN</code> lists
+     * @param inListShapes the shapes of the <code>IN</code> lists
+     */
+    private FilterSignature(String signature, List<Object> arguments, FilterCriteria filter, Map<String, JoinType> joins,
+            InLists inLists, List<Long> inListShapes) {
+        this.signature = signature;
+        this.arguments = Collections.unmodifiableList(arguments);
+        this.filter = filter;
+        this.joins = joins;
+        this.inLists = inLists;
+        this.inListShapes = Collections.unmodifiableList(inListShapes);
+        joins.keySet().forEach(j -> joinPositions.put(j, joinPositions.size()));
+    }
+    
+    
+    /**
+     * Computes the signature of the given filters with the {@link InLists#DEFAULT default settings} of the <code>IN</code> lists
+     * @param filters the filters, or <code>null</code> for no filters
+     * @return the signature, or <code>null</code> if the filters contain criteria that cannot be rendered in JPQL
+     */
+    public static FilterSignature of(FilterBuilder filters) {
+        return of(filters, InLists.DEFAULT);
+    }
+    
+    
+    /**
+     * Computes the signature of the given filters
+     * @param filters the filters, or <code>null</code> for no filters
+     * @param inLists the settings of the <code>IN</code> lists
+     * @return the signature, or <code>null</code> if the filters contain criteria that cannot be rendered in JPQL
+     */
+    public static FilterSignature of(FilterBuilder filters, InLists inLists) {
+        FilterSignature result;
+        
+        if((filters == null) || (filters.filter == null)) {
+            result = new FilterSignature(StringUtils.EMPTY, new ArrayList<>(), null, Collections.emptyMap(), inLists, Collections.emptyList());
+        } else {
+            FilterCriteria filter = FilterOptimizer.optimize(filters.filter);
+            StringBuilder signature = new StringBuilder();
+            List<Object> arguments = new ArrayList<>();
+            List<Long> inListShapes = new ArrayList<>();
+            Set<String> joinNames = new LinkedHashSet<>();
+            
+            if(appendSignature(filter, signature, arguments, joinNames, inLists, inListShapes)) {
+                // The parents of the nested joins are sorted before their children
+                Map<String, JoinType> joins = new TreeMap<>();
+                for(String joinName : joinNames) {
+                    for(int separator = joinName.indexOf('.'); separator > 0; separator = joinName.indexOf('.', separator + 1)) {
+                        joins.put(joinName.substring(0, separator), filters.joinMap.getOrDefault(joinName.substring(0, separator), JoinType.INNER));
+                    }
+                    joins.put(joinName, filters.joinMap.getOrDefault(joinName, JoinType.INNER));
+                }
+                
+                if(!joins.isEmpty()) {
+                    signature.append(joins);
+                }
+                
+                result = new FilterSignature(signature.toString(), arguments, filter, joins, inLists, inListShapes);
+            } else {
+                result = null;
+            }
+        }
+        
+        return result;
+    }
+    
+    
+    /**
+     * Appends the signature and the arguments of a criteria
+     * @param criteria the criteria
+     * @param signature the signature
+     * @param arguments the arguments
+     * @param joinNames the names of the joins used
+     * @param inLists the settings of the <code>IN</code> lists
+     * @param inListShapes the shapes of the <code>IN</code> lists
+     * @return <code>false</code> if the criteria cannot be rendered in JPQL
+     */
+    private static boolean appendSignature(FilterCriteria criteria, StringBuilder signature, List<Object> arguments, Set<String> joinNames,
+            InLists inLists, List<Long> inListShapes) {
+        boolean supported = true;
+        
+        if(criteria instanceof BooleanFilterCriteria) {
+            BooleanFilterCriteria boolFilter = (BooleanFilterCriteria)criteria;
+            signature.append(boolFilter.getOperator()).append('(');
+            
+            for(FilterCriteria inner : boolFilter.getFilters()) {
+                supported = supported && appendSignature(inner, signature, arguments, joinNames, inLists, inListShapes);
+                signature.append(',');
+            }
+            
+            signature.append(')');
+        } else if(criteria instanceof NotFilterCriteria) {
+            signature.append("NOT(");
+            supported = appendSignature(((NotFilterCriteria)criteria).getFilter(), signature, arguments, joinNames, inLists, inListShapes);
+            signature.append(')');
+        } else if(criteria instanceof TypeFilterCriteria) {
+            signature.append(((TypeFilterCriteria)criteria).getOperation())
+                .append(':')
+                .append(((TypeFilterCriteria)criteria).clazzType.getName());
+        } else if((criteria instanceof UnaryFilterCriteria) || (criteria instanceof BinaryFilterCriteria)) {
+            BaseFilterCriteria baseFilter = (BaseFilterCriteria)criteria;
+            supported = isIdentifier(baseFilter.getFieldName()) &&
+                    (StringUtils.isBlank(baseFilter.getJoinName()) || isJoinPath(baseFilter.getJoinName()));
+            
+            if(StringUtils.isNotBlank(baseFilter.getJoinName())) {
+                joinNames.add(baseFilter.getJoinName());
+            }
+            
+            signature.append(baseFilter.getOperation()).append(':').append(baseFilter.getQualifiedFieldName());
+            
+            if(criteria instanceof BinaryFilterCriteria) {
+                Object value = ((BinaryFilterCriteria)criteria).getValue();
+                
+                if(baseFilter.getOperation() == FilterOperation.IN) {
+                    List<List<Object>> chunks = inLists.toChunks(value);
+                    signature.append(':').append(chunks.size());
+                    inListShapes.add(InLists.shapeOf(chunks));
+                    
+                    if(!chunks.isEmpty()) {
+                        signature.append('x').append(chunks.get(chunks.size() - 1).size());
+                        arguments.addAll(chunks);
+                    }
+                } else if(baseFilter.getOperation() == FilterOperation.BETWEEN) {
+                    arguments.addAll((List<?>)value);
+                } else if(LikePatterns.isPatternOperation(baseFilter.getOperation())) {
+                    arguments.add(LikePatterns.toPattern(baseFilter.getOperation(), value));
+                } else {
+                    arguments.add(value);
+                }
+            }
+        } else {
+            supported = false;
+        }
+        
+        return supported;
+    }
+    
+    
+    /**
+     * Determines if a name can be rendered in JPQL as a field or join name
+     * @param name the name to validate
+     * @return <code>true</code> if the name is a valid identifier
+     */
+    public static boolean isIdentifier(String name) {
+        return (name != null) && IDENTIFIER.matcher(name).matches();
+    }
+    
+    
+    /**
+     * Determines if a join path can be rendered in JPQL, where nested joins are separated by dots
+     * @param joinPath the join path to validate
+     * @return <code>true</code> if every join of the path is a valid identifier
+     */
+    private static boolean isJoinPath(String joinPath) {
+        boolean valid = true;
+        
+        for(String joinName : StringUtils.splitPreserveAllTokens(joinPath, '.')) {
+            valid = valid && isIdentifier(joinName);
+        }
+        
+        return valid;
+    }
+    
+    
+    /**
+     * @return the structural signature of the filters
+     */
+    public String getSignature() {
+        return signature;
+    }
+    
+    
+    /**
+     * @return the values of the filters, in the same order as the positional parameters of the JPQL
+     */
+    public List<Object> getArguments() {
+        return arguments;
+    }
+    
+    
+    /**
+     * @return the shapes of the <code>IN</code> lists of the filters, as defined by {@link InLists#shapeOf(List)}
+     */
+    public List<Long> getInListShapes() {
+        return inListShapes;
+    }
+    
+    
+    /**
+     * @return <code>true</code> if the filters use joins
+     */
+    public boolean hasJoins() {
+        return !joins.isEmpty();
+    }
+    
+    
+    /**
+     * Renders the JPQL join clauses needed by the filters
+     * @param alias the alias of the root entity
+     * @return the join clauses, or an empty string if there are no joins
+     */
+    public String toJoinClause(String alias) {
+        StringBuilder jpql = new StringBuilder();
+        
+        for(Map.Entry<String, JoinType> join : joins.entrySet()) {
+            int separator = join.getKey().lastIndexOf('.');
+            
+            jpql.append(join.getValue() == JoinType.INNER ? " inner join " : (join.getValue() == JoinType.LEFT ? " left join " : " right join "))
+                .append((separator < 0) ? alias : this.joinAlias(alias, join.getKey().substring(0, separator)))
+                .append('.').append(join.getKey().substring(separator + 1))
+                .append(' ').append(this.joinAlias(alias, join.getKey()));
+        }
+        
+        return jpql.toString();
+    }
+    
+    
+    /**
+     * Renders the JPQL conditional expression of the filters, using positional parameters
+     * @param alias the alias of the root entity
+     * @param entityNames function that returns the entity name of a class (used by type filters)
+     * @return the conditional expression, or an empty string if there are no filters
+     */
+    public String toWhereClause(String alias, Function<Class<?>, String> entityNames) {
+        StringBuilder jpql = new StringBuilder();
+        
+        if(filter != null) {
+            this.appendJpql(filter, alias, entityNames, jpql, new int[] { 0 });
+        }
+        
+        return jpql.toString();
+    }
+    
+    
+    /**
+     * Appends the JPQL of a criteria
+     * @param criteria the criteria
+     * @param alias the alias of the root entity
+     * @param entityNames function that returns the entity name of a class
+     * @param jpql the JPQL
+     * @param parameter the number of the last parameter used
+     */
+    private void appendJpql(FilterCriteria criteria, String alias, Function<Class<?>, String> entityNames, StringBuilder jpql, int[] parameter) {
+        if(criteria instanceof BooleanFilterCriteria) {
+            BooleanFilterCriteria boolFilter = (BooleanFilterCriteria)criteria;
+            
+            if(boolFilter.getFilters().isEmpty()) {
+                jpql.append(boolFilter.getOperator() == BooleanOperator.AND ? "1 = 1" : "1 = 0");
+            } else {
+                jpql.append('(');
+                for(int i = 0; i < boolFilter.getFilters().size(); i++) {
+                    if(i > 0) {
+                        jpql.append(boolFilter.getOperator() == BooleanOperator.AND ? " and " : " or ");
+                    }
+                    this.appendJpql(boolFilter.getFilters().get(i), alias, entityNames, jpql, parameter);
+                }
+                jpql.append(')');
+            }
+        } else if(criteria instanceof NotFilterCriteria) {
+            jpql.append("not (");
+            this.appendJpql(((NotFilterCriteria)criteria).getFilter(), alias, entityNames, jpql, parameter);
+            jpql.append(')');
+        } else if(criteria instanceof TypeFilterCriteria) {
+            TypeFilterCriteria typeFilter = (TypeFilterCriteria)criteria;
+            jpql.append("type(").append(alias).append(')')
+                .append(typeFilter.getOperation() == FilterOperation.TYPE ? " = " : " <> ")
+                .append(entityNames.apply(typeFilter.clazzType));
+        } else {
+            BaseFilterCriteria baseFilter = (BaseFilterCriteria)criteria;
+            String path = StringUtils.isBlank(baseFilter.getJoinName()) ?
+                    alias + "." + baseFilter.getFieldName() :
+                        this.joinAlias(alias, baseFilter.getJoinName()) + "." + baseFilter.getFieldName();
+            
+            switch(baseFilter.getOperation()) {
+            case NULL:
+                jpql.append(path).append(" is null");
+                break;
+            case NOT_NULL:
+                jpql.append(path).append(" is not null");
+                break;
+            case EQUALS:
+                jpql.append(path).append(" = ?").append(++parameter[0]);
+                break;
+            case NOT_EQUALS:
+                jpql.append(path).append(" <> ?").append(++parameter[0]);
+                break;
+            case GREATER_THAN:
+                jpql.append(path).append(" > ?").append(++parameter[0]);
+                break;
+            case GREATER_THAN_OR_EQUALS:
+                jpql.append(path).append(" >= ?").append(++parameter[0]);
+                break;
+            case LESS_THAN:
+                jpql.append(path).append(" < ?").append(++parameter[0]);
+                break;
+            case LESS_THAN_OR_EQUALS:
+                jpql.append(path).append(" <= ?").append(++parameter[0]);
+                break;
+            case BETWEEN:
+                jpql.append(path).append(" between ?").append(++parameter[0]).append(" and ?").append(++parameter[0]);
+                break;
+            case LIKE:
+            case STARTS_WITH:
+            case ENDS_WITH:
+            case CONTAINS:
+                jpql.append(path).append(" like ?").append(++parameter[0]).append(" escape '").append(LikePatterns.ESCAPE_CHAR).append('\'');
+                break;
+            case LIKE_IGNORE_CASE:
+            case STARTS_WITH_IGNORE_CASE:
+            case ENDS_WITH_IGNORE_CASE:
+            case CONTAINS_IGNORE_CASE:
+                jpql.append("lower(").append(path).append(") like ?").append(++parameter[0]).append(" escape '").append(LikePatterns.ESCAPE_CHAR).append('\'');
+                break;
+            case IN:
+                int chunks = inLists.toChunks(((BinaryFilterCriteria)criteria).getValue()).size();
+                if(chunks == 0) {
+                    jpql.append("1 = 0");
+                } else {
+                    jpql.append(chunks > 1 ? "(" : "");
+                    for(int i = 0; i < chunks; i++) {
+                        jpql.append(i > 0 ? " or " : "").append(path).append(" in (?").append(++parameter[0]).append(')');
+                    }
+                    jpql.append(chunks > 1 ? ")" : "");
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Incorrect filter operation");
+            }
+        }
+    }
+    
+    
+    /**
+     * Returns the alias of a join, numbered by the position of the join so the aliases
+     * of nested joins (e.g. <code>a.b</code>) never collide with other join names
+     * @param alias the alias of the root entity
+     * @param joinName the path of the join
+     * @return the alias of the join
+     */
+    private String joinAlias(String alias, String joinName) {
+        return alias + "_" + joinPositions.get(joinName);
+    }
+}
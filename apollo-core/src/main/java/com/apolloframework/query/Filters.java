@@ -229,6 +229,385 @@ public abstract class Filters {
 
 
 
+    /**
+     * Creates a <code>fieldName &gt; value</code> filter
+     * @param fieldName the name of the field
+     * @param value the value of the filter
+     * @return the filter criteria object
+     */
+    public static FilterCriteria greaterThan(String fieldName, Comparable<?> value) {
+        return Filters.greaterThan(null, fieldName, value);
+    }
+
+
+
+    /**
+     * Creates a <code>fieldName &gt; value</code> filter
+     * @param join the name of the join
+     * @param fieldName the name of the field
+     * @param value the value of the filter
+     * @return the filter criteria object
+     */
+    public static FilterCriteria greaterThan(String join, String fieldName, Comparable<?> value) {
+        if(value == null) {
+            throw new IllegalArgumentException("The value of the comparison cannot be null");
+        }
+        
+        return new BinaryFilterCriteria(join, fieldName, FilterOperation.GREATER_THAN, value);
+    }
+
+
+
+    /**
+     * Creates a <code>fieldName &gt;= value</code> filter
+     * @param fieldName the name of the field
+     * @param value the value of the filter
+     * @return the filter criteria object
+     */
+    public static FilterCriteria greaterThanOrEquals(String fieldName, Comparable<?> value) {
+        return Filters.greaterThanOrEquals(null, fieldName, value);
+    }
+
+
+
+    /**
+     * Creates a <code>fieldName &gt;= value</code> filter
+     * @param join the name of the join
+     * @param fieldName the name of the field
+     * @param value the value of the filter
+     * @return the filter criteria object
+     */
+    public static FilterCriteria greaterThanOrEquals(String join, String fieldName, Comparable<?> value) {
+        if(value == null) {
+            throw new IllegalArgumentException("The value of the comparison cannot be null");
+        }
+        
+        return new BinaryFilterCriteria(join, fieldName, FilterOperation.GREATER_THAN_OR_EQUALS, value);
+    }
+
+
+
+    /**
+     * Creates a <code>fieldName &lt; value</code> filter
+     * @param fieldName the name of the field
+     * @param value the value of the filter
+     * @return the filter criteria object
+     */
+    public static FilterCriteria lessThan(String fieldName, Comparable<?> value) {
+        return Filters.lessThan(null, fieldName, value);
+    }
+
+
+
+    /**
+     * Creates a <code>fieldName &lt; value</code> filter
+     * @param join the name of the join
+     * @param fieldName the name of the field
+     * @param value the value of the filter
+     * @return the filter criteria object
+     */
+    public static FilterCriteria lessThan(String join, String fieldName, Comparable<?> value) {
+        if(value == null) {
+            throw new IllegalArgumentException("The value of the comparison cannot be null");
+        }
+        
+        return new BinaryFilterCriteria(join, fieldName, FilterOperation.LESS_THAN, value);
+    }
+
+
+
+    /**
+     * Creates a <code>fieldName &lt;= value</code> filter
+     * @param fieldName the name of the field
+     * @param value the value of the filter
+     * @return the filter criteria object
+     */
+    public static FilterCriteria lessThanOrEquals(String fieldName, Comparable<?> value) {
+        return Filters.lessThanOrEquals(null, fieldName, value);
+    }
+
+
+
+    /**
+     * Creates a <code>fieldName &lt;= value</code> filter
+     * @param join the name of the join
+     * @param fieldName the name of the field
+     * @param value the value of the filter
+     * @return the filter criteria object
+     */
+    public static FilterCriteria lessThanOrEquals(String join, String fieldName, Comparable<?> value) {
+        if(value == null) {
+            throw new IllegalArgumentException("The value of the comparison cannot be null");
+        }
+        
+        return new BinaryFilterCriteria(join, fieldName, FilterOperation.LESS_THAN_OR_EQUALS, value);
+    }
+
+
+
+    /**
+     * Creates a <code>fieldName between from and to</code> filter, where both bounds are included
+     * @param fieldName the name of the field
+     * @param from the lower bound
+     * @param to the upper bound
+     * @return the filter criteria object
+     */
+    public static FilterCriteria between(String fieldName, Comparable<?> from, Comparable<?> to) {
+        return Filters.between(null, fieldName, from, to);
+    }
+
+
+
+    /**
+     * Creates a <code>fieldName between from and to</code> filter, where both bounds are included
+     * @param join the name of the join
+     * @param fieldName the name of the field
+     * @param from the lower bound
+     * @param to the upper bound
+     * @return the filter criteria object
+     */
+    public static FilterCriteria between(String join, String fieldName, Comparable<?> from, Comparable<?> to) {
+        if((from == null) || (to == null)) {
+            throw new IllegalArgumentException("The bounds of the range cannot be null");
+        }
+        
+        return new BinaryFilterCriteria(join, fieldName, FilterOperation.BETWEEN, Arrays.asList(from, to));
+    }
+
+
+
+    /**
+     * Creates a <code>fieldName like pattern</code> filter
+     * @param fieldName the name of the field
+     * @param pattern the <code>LIKE</code> pattern, where <code>%</code> and <code>_</code> are wildcards escaped with {@link LikePatterns#ESCAPE_CHAR}
+     * @return the filter criteria object
+     */
+    public static FilterCriteria like(String fieldName, String pattern) {
+        return Filters.like(null, fieldName, pattern);
+    }
+
+
+
+    /**
+     * Creates a <code>fieldName like pattern</code> filter
+     * @param join the name of the join
+     * @param fieldName the name of the field
+     * @param pattern the <code>LIKE</code> pattern, where <code>%</code> and <code>_</code> are wildcards escaped with {@link LikePatterns#ESCAPE_CHAR}
+     * @return the filter criteria object
+     */
+    public static FilterCriteria like(String join, String fieldName, String pattern) {
+        if(pattern == null) {
+            throw new IllegalArgumentException("The text to match cannot be null");
+        }
+        
+        return new BinaryFilterCriteria(join, fieldName, FilterOperation.LIKE, pattern);
+    }
+
+
+
+    /**
+     * Creates a <code>fieldName like 'value%'</code> filter
+     * @param fieldName the name of the field
+     * @param value the prefix, matched literally
+     * @return the filter criteria object
+     */
+    public static FilterCriteria startsWith(String fieldName, String value) {
+        return Filters.startsWith(null, fieldName, value);
+    }
+
+
+
+    /**
+     * Creates a <code>fieldName like 'value%'</code> filter
+     * @param join the name of the join
+     * @param fieldName the name of the field
+     * @param value the prefix, matched literally
+     * @return the filter criteria object
+     */
+    public static FilterCriteria startsWith(String join, String fieldName, String value) {
+        if(value == null) {
+            throw new IllegalArgumentException("The text to match cannot be null");
+        }
+        
+        return new BinaryFilterCriteria(join, fieldName, FilterOperation.STARTS_WITH, value);
+    }
+
+
+
+    /**
+     * Creates a <code>fieldName like '%value'</code> filter
+     * @param fieldName the name of the field
+     * @param value the suffix, matched literally
+     * @return the filter criteria object
+     */
+    public static FilterCriteria endsWith(String fieldName, String value) {
+        return Filters.endsWith(null, fieldName, value);
+    }
+
+
+
+    /**
+     * Creates a <code>fieldName like '%value'</code> filter
+     * @param join the name of the join
+     * @param fieldName the name of the field
+     * @param value the suffix, matched literally
+     * @return the filter criteria object
+     */
+    public static FilterCriteria endsWith(String join, String fieldName, String value) {
+        if(value == null) {
+            throw new IllegalArgumentException("The text to match cannot be null");
+        }
+        
+        return new BinaryFilterCriteria(join, fieldName, FilterOperation.ENDS_WITH, value);
+    }
+
+
+
+    /**
+     * Creates a <code>fieldName like '%value%'</code> filter
+     * @param fieldName the name of the field
+     * @param value the text, matched literally
+     * @return the filter criteria object
+     */
+    public static FilterCriteria contains(String fieldName, String value) {
+        return Filters.contains(null, fieldName, value);
+    }
+
+
+
+    /**
+     * Creates a <code>fieldName like '%value%'</code> filter
+     * @param join the name of the join
+     * @param fieldName the name of the field
+     * @param value the text, matched literally
+     * @return the filter criteria object
+     */
+    public static FilterCriteria contains(String join, String fieldName, String value) {
+        if(value == null) {
+            throw new IllegalArgumentException("The text to match cannot be null");
+        }
+        
+        return new BinaryFilterCriteria(join, fieldName, FilterOperation.CONTAINS, value);
+    }
+
+
+
+    /**
+     * Creates a <code>lower(fieldName) like lower(pattern)</code> filter
+     * @param fieldName the name of the field
+     * @param pattern the <code>LIKE</code> pattern, where <code>%</code> and <code>_</code> are wildcards escaped with {@link LikePatterns#ESCAPE_CHAR}
+     * @return the filter criteria object
+     */
+    public static FilterCriteria likeIgnoreCase(String fieldName, String pattern) {
+        return Filters.likeIgnoreCase(null, fieldName, pattern);
+    }
+
+
+
+    /**
+     * Creates a <code>lower(fieldName) like lower(pattern)</code> filter
+     * @param join the name of the join
+     * @param fieldName the name of the field
+     * @param pattern the <code>LIKE</code> pattern, where <code>%</code> and <code>_</code> are wildcards escaped with {@link LikePatterns#ESCAPE_CHAR}
+     * @return the filter criteria object
+     */
+    public static FilterCriteria likeIgnoreCase(String join, String fieldName, String pattern) {
+        if(pattern == null) {
+            throw new IllegalArgumentException("The text to match cannot be null");
+        }
+        
+        return new BinaryFilterCriteria(join, fieldName, FilterOperation.LIKE_IGNORE_CASE, pattern);
+    }
+
+
+
+    /**
+     * Creates a <code>lower(fieldName) like lower('value%')</code> filter
+     * @param fieldName the name of the field
+     * @param value the prefix, matched literally
+     * @return the filter criteria object
+     */
+    public static FilterCriteria startsWithIgnoreCase(String fieldName, String value) {
+        return Filters.startsWithIgnoreCase(null, fieldName, value);
+    }
+
+
+
+    /**
+     * Creates a <code>lower(fieldName) like lower('value%')</code> filter
+     * @param join the name of the join
+     * @param fieldName the name of the field
+     * @param value the prefix, matched literally
+     * @return the filter criteria object
+     */
+    public static FilterCriteria startsWithIgnoreCase(String join, String fieldName, String value) {
+        if(value == null) {
+            throw new IllegalArgumentException("The text to match cannot be null");
+        }
+        
+        return new BinaryFilterCriteria(join, fieldName, FilterOperation.STARTS_WITH_IGNORE_CASE, value);
+    }
+
+
+
+    /**
+     * Creates a <code>lower(fieldName) like lower('%value')</code> filter
+     * @param fieldName the name of the field
+     * @param value the suffix, matched literally
+     * @return the filter criteria object
+     */
+    public static FilterCriteria endsWithIgnoreCase(String fieldName, String value) {
+        return Filters.endsWithIgnoreCase(null, fieldName, value);
+    }
+
+
+
+    /**
+     * Creates a <code>lower(fieldName) like lower('%value')</code> filter
+     * @param join the name of the join
+     * @param fieldName the name of the field
+     * @param value the suffix, matched literally
+     * @return the filter criteria object
+     */
+    public static FilterCriteria endsWithIgnoreCase(String join, String fieldName, String value) {
+        if(value == null) {
+            throw new IllegalArgumentException("The text to match cannot be null");
+        }
+        
+        return new BinaryFilterCriteria(join, fieldName, FilterOperation.ENDS_WITH_IGNORE_CASE, value);
+    }
+
+
+
+    /**
+     * Creates a <code>lower(fieldName) like lower('%value%')</code> filter
+     * @param fieldName the name of the field
+     * @param value the text, matched literally
+     * @return the filter criteria object
+     */
+    public static FilterCriteria containsIgnoreCase(String fieldName, String value) {
+        return Filters.containsIgnoreCase(null, fieldName, value);
+    }
+
+
+
+    /**
+     * Creates a <code>lower(fieldName) like lower('%value%')</code> filter
+     * @param join the name of the join
+     * @param fieldName the name of the field
+     * @param value the text, matched literally
+     * @return the filter criteria object
+     */
+    public static FilterCriteria containsIgnoreCase(String join, String fieldName, String value) {
+        if(value == null) {
+            throw new IllegalArgumentException("The text to match cannot be null");
+        }
+        
+        return new BinaryFilterCriteria(join, fieldName, FilterOperation.CONTAINS_IGNORE_CASE, value);
+    }
+
+
+
     /**
      * Creates a <code>fieldName = true</code> filter
      * @param fieldName the name of the field
@@ -0,0 +1,105 @@
+package com.apolloframework.query;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * Normalization of the values of {@link FilterOperation#IN} filters before sending them to the database.
+ * Every distinct number of values produces a distinct SQL statement, so the lists are padded (repeating
+ * their last value) up to the next power of two, keeping the number of statements (and plans) logarithmic.
+ * The lists larger than {@link #getMaxSize()} are split in chunks that are joined with <code>OR</code>,
+ * since some databases limit the number of values of an <code>IN</code> list (e.g. 1000 in Oracle).
+ * The settings are immutable, and every repository keeps its own (by default {@link #DEFAULT})
+ * @author amarenco
+ *
+ */
+public final class InLists {
+    /** Default maximum number of values in a single <code>IN</code> list */
+    public static final int DEFAULT_MAX_SIZE = 512;
+    
+    /** The default settings, padding the lists and splitting them in chunks of {@link #DEFAULT_MAX_SIZE} values */
+    public static final InLists DEFAULT = new InLists(DEFAULT_MAX_SIZE, true);
+    
+    /** Maximum number of values in a single <code>IN</code> list */
+    private final int maxSize;
+    /** Determines if the lists are padded up to the next power of two */
+    private final boolean paddingEnabled;
+    
+    
+    /**
+     * Default constructor
+     * @param maxSize the maximum number of values in a single <code>IN</code> list.
+     * A power of two keeps every chunk at a padded size
+     * @param paddingEnabled <code>true</code> to pad the lists up to the next power of two
+     */
+    public InLists(int maxSize, boolean paddingEnabled) {
+        if(maxSize <= 0) {
+            throw new IllegalArgumentException("The maximum size must be greater than zero");
+        }
+        
+        this.maxSize = maxSize;
+        this.paddingEnabled = paddingEnabled;
+    }
+    
+    
+    /**
+     * Splits the values of an <code>IN</code> filter in chunks of at most {@link #getMaxSize()} values,
+     * removing duplicates and padding the last chunk up to the next power of two
+     * @param value the value of the filter, either a collection or a single value
+     * @return the chunks of values, or an empty list if there are no values
+     */
+    public List<List<Object>> toChunks(Object value) {
+        Collection<?> values = (value instanceof Collection) ? (Collection<?>)value : Collections.singletonList(value);
+        List<Object> distinct = new ArrayList<>(new LinkedHashSet<>(values));
+        List<List<Object>> chunks = new ArrayList<>();
+        
+        for(int start = 0; start < distinct.size(); start += maxSize) {
+            chunks.add(new ArrayList<>(distinct.subList(start, Math.min(start + maxSize, distinct.size()))));
+        }
+        
+        if(!chunks.isEmpty() && paddingEnabled) {
+            List<Object> last = chunks.get(chunks.size() - 1);
+            int size = Integer.highestOneBit(last.size());
+            if(size < last.size()) {
+                size = Math.min(size << 1, maxSize);
+            }
+            
+            Object padding = last.get(last.size() - 1);
+            while(last.size() < size) {
+                last.add(padding);
+            }
+        }
+        
+        return chunks;
+    }
+    
+    
+    /**
+     * Returns the shape of the chunks of an <code>IN</code> list (the number of chunks and the size of the
+     * last chunk), where each shape produces a distinct SQL statement
+     * @param chunks the chunks of the list
+     * @return the shape of the chunks
+     */
+    public static long shapeOf(List<List<Object>> chunks) {
+        return chunks.isEmpty() ? 0 : (((long)chunks.size() << 32) | chunks.get(chunks.size() - 1).size());
+    }
+    
+    
+    /**
+     * @return the maximum number of values in a single <code>IN</code> list
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+    
+    
+    /**
+     * @return <code>true</code> if the lists are padded up to the next power of two
+     */
+    public boolean isPaddingEnabled() {
+        return paddingEnabled;
+    }
+}
@@ -0,0 +1,149 @@
+package com.apolloframework.query;
+
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Conversion of the string matching filters into <code>LIKE</code> patterns. The values of the
+ * {@link FilterOperation#STARTS_WITH}, {@link FilterOperation#ENDS_WITH} and {@link FilterOperation#CONTAINS}
+ * filters are matched literally, so their wildcards are escaped with {@link #ESCAPE_CHAR}, while the values of
+ * {@link FilterOperation#LIKE} filters are already patterns (escaping their wildcards with {@link #ESCAPE_CHAR}). A prefix pattern (<code>'abc%'</code>) can be
+ * resolved with an index range scan, but a leading wildcard always scans the whole index or table.
+ * The case insensitive operations compare the lower case of the field with the lower case of the pattern,
+ * which uses an index only when the database has a functional index on <code>lower(field)</code>
+ * @author amarenco
+ *
+ */
+public final class LikePatterns {
+    /**
+     * The escape character of the patterns, which is not a backslash since MySQL and MariaDB
+     * also read the backslash as an escape of the string literal
+     */
+    public static final char ESCAPE_CHAR = '!';
+    
+    
+    /**
+     * Utility class
+     */
+    private LikePatterns() {
+    }
+    
+    
+    /**
+     * Determines if an operation matches strings with a <code>LIKE</code> pattern
+     * @param operation the operation
+     * @return <code>true</code> for the string matching operations
+     */
+    public static boolean isPatternOperation(FilterOperation operation) {
+        return isCaseSensitive(operation) || isIgnoreCase(operation);
+    }
+    
+    
+    /**
+     * @param operation the operation
+     * @return <code>true</code> for the case sensitive string matching operations
+     */
+    private static boolean isCaseSensitive(FilterOperation operation) {
+        return (operation == FilterOperation.LIKE) || (operation == FilterOperation.STARTS_WITH) ||
+                (operation == FilterOperation.ENDS_WITH) || (operation == FilterOperation.CONTAINS);
+    }
+    
+    
+    /**
+     * @param operation the operation
+     * @return <code>true</code> for the case insensitive string matching operations
+     */
+    public static boolean isIgnoreCase(FilterOperation operation) {
+        return (operation == FilterOperation.LIKE_IGNORE_CASE) || (operation == FilterOperation.STARTS_WITH_IGNORE_CASE) ||
+                (operation == FilterOperation.ENDS_WITH_IGNORE_CASE) || (operation == FilterOperation.CONTAINS_IGNORE_CASE);
+    }
+    
+    
+    /**
+     * Escapes the wildcards of a value, so it is matched literally
+     * @param value the value
+     * @return the escaped value
+     */
+    public static String escape(String value) {
+        StringBuilder escaped = new StringBuilder(value.length() + 4);
+        
+        for(int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if((c == '%') || (c == '_') || (c == ESCAPE_CHAR)) {
+                escaped.append(ESCAPE_CHAR);
+            }
+            escaped.append(c);
+        }
+        
+        return escaped.toString();
+    }
+    
+    
+    /**
+     * Converts the value of a string matching filter into the pattern sent to the database,
+     * in lower case for the case insensitive operations
+     * @param operation the operation of the filter
+     * @param value the value of the filter
+     * @return the <code>LIKE</code> pattern
+     */
+    public static String toPattern(FilterOperation operation, Object value) {
+        String text = String.valueOf(value);
+        String pattern;
+        
+        switch(operation) {
+        case LIKE:
+        case LIKE_IGNORE_CASE:
+            pattern = text;
+            break;
+        case STARTS_WITH:
+        case STARTS_WITH_IGNORE_CASE:
+            pattern = escape(text) + "%";
+            break;
+        case ENDS_WITH:
+        case ENDS_WITH_IGNORE_CASE:
+            pattern = "%" + escape(text);
+            break;
+        case CONTAINS:
+        case CONTAINS_IGNORE_CASE:
+            pattern = "%" + escape(text) + "%";
+            break;
+        default:
+            throw new IllegalArgumentException("Incorrect filter operation");
+        }
+        
+        return isIgnoreCase(operation) ? pattern.toLowerCase(Locale.ROOT) : pattern;
+    }
+    
+    
+    /**
+     * Converts a <code>LIKE</code> pattern into a regular expression, used to evaluate the filters in memory
+     * @param pattern the <code>LIKE</code> pattern
+     * @return the regular expression
+     */
+    public static Pattern toRegex(String pattern) {
+        StringBuilder regex = new StringBuilder();
+        StringBuilder literal = new StringBuilder();
+        
+        for(int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            
+            if((c == ESCAPE_CHAR) && (i + 1 < pattern.length())) {
+                literal.append(pattern.charAt(++i));
+            } else if((c == '%') || (c == '_')) {
+                if(literal.length() > 0) {
+                    regex.append(Pattern.quote(literal.toString()));
+                    literal.setLength(0);
+                }
+                regex.append((c == '%') ? ".*" : ".");
+            } else {
+                literal.append(c);
+            }
+        }
+        
+        if(literal.length() > 0) {
+            regex.append(Pattern.quote(literal.toString()));
+        }
+        
+        return Pattern.compile(regex.toString(), Pattern.DOTALL);
+    }
+}
@@ -1,5 +1,7 @@
 package com.apolloframework.query;
 
+import java.util.Objects;
+
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.Predicate;
 
@@ -12,7 +14,7 @@ import com.apolloframework.query.FilterBuilder.PathResolver;
  */
 public class NotFilterCriteria implements FilterCriteria {
     /** The filter criteria that will be negated */
-    private FilterCriteria filter;
+    private final FilterCriteria filter;
     
     
     /**
@@ -42,5 +44,23 @@ public class NotFilterCriteria implements FilterCriteria {
     public FilterBuilder toBuilder() {
         return new FilterBuilder(this);
     }
-
+    
+    
+    @Override
+    public String toString() {
+        return "NOT " + filter;
+    }
+    
+    
+    @Override
+    public int hashCode() {
+        return ~Objects.hashCode(filter);
+    }
+    
+    
+    @Override
+    public boolean equals(Object obj) {
+        return (this == obj) ||
+                ((obj != null) && (obj.getClass() == this.getClass()) && Objects.equals(filter, ((NotFilterCriteria)obj).filter));
+    }
 }
@@ -16,7 +16,7 @@ import com.apolloframework.query.FilterBuilder.PathResolver;
  */
 public class TypeFilterCriteria extends BaseFilterCriteria {
     /** The type to check */
-    protected Class<?> clazzType;
+    protected final Class<?> clazzType;
     
     
     /**
@@ -33,11 +33,19 @@ public class TypeFilterCriteria extends BaseFilterCriteria {
      * @param clazzType the type to check
      */
     public TypeFilterCriteria(Class<?> clazzType, boolean negative) {
-        super(StringUtils.EMPTY, StringUtils.EMPTY, negative ? FilterOperation.NOT_TYPE : FilterOperation.TYPE);
+        super(StringUtils.EMPTY, StringUtils.EMPTY, negative ? FilterOperation.NOT_TYPE : FilterOperation.TYPE, clazzType);
         this.clazzType = clazzType;
     }
     
     
+    /**
+     * @return the type to check
+     */
+    public Class<?> getClazzType() {
+        return clazzType;
+    }
+    
+    
     
     @Override
     public Predicate toPredicate(CriteriaBuilder criteriaBuilder, PathResolver pathResolver) {
@@ -54,4 +62,10 @@ public class TypeFilterCriteria extends BaseFilterCriteria {
         
         return predicate;
     }
+    
+    
+    @Override
+    public String toString() {
+        return operation + "(" + clazzType.getName() + ")";
+    }
 }
\ No newline at end of file
@@ -41,4 +41,10 @@ public class UnaryFilterCriteria extends BaseFilterCriteria {
         
         return predicate;
     }
+    
+    
+    @Override
+    public String toString() {
+        return this.getQualifiedFieldName() + " " + operation;
+    }
 }
\ No newline at end of file
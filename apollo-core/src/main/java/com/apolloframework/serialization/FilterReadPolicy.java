@@ -0,0 +1,522 @@
+package com.apolloframework.serialization;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.TemporalAccessor;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.apache.commons.lang3.StringUtils;
+import org.joda.time.DateTime;
+import org.joda.time.format.ISODateTimeFormat;
+
+import com.apolloframework.query.BinaryFilterCriteria;
+import com.apolloframework.query.FilterCriteria;
+import com.apolloframework.query.FilterOperation;
+import com.apolloframework.query.FilterSignature;
+import com.apolloframework.query.LikePatterns;
+import com.apolloframework.query.TypeFilterCriteria;
+import com.apolloframework.query.UnaryFilterCriteria;
+
+/**
+ * Rules to read {@link FilterCriteria} received from clients (e.g. in JSON or in the binary format).
+ * Only the whitelisted fields and types can be filtered, and the values are converted into the declared
+ * type of every field, since the wire formats only have strings, numbers and booleans. The size of the
+ * filters is limited by the depth of the tree, the number of criteria, the number of values and the
+ * length of the strings, so a large payload is rejected before it is fully read.
+ * Fields are named with their join path (e.g. <code>customer.address.city</code>)
+ * @author amarenco
+ *
+ */
+public class FilterReadPolicy {
+    /** Default maximum depth of the tree of criteria */
+    public static final int DEFAULT_MAX_DEPTH = 16;
+    /** Default maximum number of criteria */
+    public static final int DEFAULT_MAX_NODES = 256;
+    /** Default maximum number of values, including the values of every list */
+    public static final int DEFAULT_MAX_VALUES = 1024;
+    /** Default maximum length of the strings */
+    public static final int DEFAULT_MAX_STRING_LENGTH = 1024;
+    /** Maximum precision and absolute scale of the decimal values, which bounds the digits of their exact conversions */
+    private static final int MAX_DECIMAL_DIGITS = 1000;
+    
+    /** The whitelisted fields and their types, or <code>null</code> to allow every field */
+    private final Map<String, Class<?>> fields;
+    /** The whitelisted types of the type filters, by their name and simple name */
+    private final Map<String, Class<?>> types = new HashMap<>();
+    private int maxDepth = DEFAULT_MAX_DEPTH;
+    private int maxNodes = DEFAULT_MAX_NODES;
+    private int maxValues = DEFAULT_MAX_VALUES;
+    private int maxStringLength = DEFAULT_MAX_STRING_LENGTH;
+    
+    
+    /**
+     * Default constructor, where no field is allowed until it is whitelisted
+     */
+    public FilterReadPolicy() {
+        this(new HashMap<>());
+    }
+    
+    
+    /**
+     * @param fields the whitelisted fields, or <code>null</code> to allow every field
+     */
+    private FilterReadPolicy(Map<String, Class<?>> fields) {
+        this.fields = fields;
+    }
+    
+    
+    /**
+     * Creates a policy that allows every field, keeping the values with the types of the wire format.
+     * It must only be used for trusted clients, since any field of the entities can be filtered
+     * @return the policy
+     */
+    public static FilterReadPolicy allowAll() {
+        return new FilterReadPolicy(null);
+    }
+    
+    
+    /**
+     * Whitelists a field, whose values are converted into the given type
+     * @param field the name of the field, including its join path
+     * @param type the type of the field (e.g. {@link Long}, {@link LocalDate} or an enum)
+     * @return the current policy
+     */
+    public FilterReadPolicy allowField(String field, Class<?> type) {
+        if(fields == null) {
+            throw new IllegalStateException("The policy already allows every field");
+        }
+        
+        fields.put(field, type);
+        return this;
+    }
+    
+    
+    /**
+     * Whitelists the types that can be used in {@link FilterOperation#TYPE} filters
+     * @param allowedTypes the types
+     * @return the current policy
+     */
+    public FilterReadPolicy allowTypes(Class<?>... allowedTypes) {
+        for(Class<?> type : allowedTypes) {
+            types.put(type.getName(), type);
+            types.put(type.getSimpleName(), type);
+        }
+        
+        return this;
+    }
+    
+    
+    /**
+     * @param maxDepth the maximum depth of the tree of criteria
+     * @return the current policy
+     */
+    public FilterReadPolicy setMaxDepth(int maxDepth) {
+        this.maxDepth = positive(maxDepth);
+        return this;
+    }
+    
+    
+    /**
+     * @param maxNodes the maximum number of criteria
+     * @return the current policy
+     */
+    public FilterReadPolicy setMaxNodes(int maxNodes) {
+        this.maxNodes = positive(maxNodes);
+        return this;
+    }
+    
+    
+    /**
+     * @param maxValues the maximum number of values, including the values of every list
+     * @return the current policy
+     */
+    public FilterReadPolicy setMaxValues(int maxValues) {
+        this.maxValues = positive(maxValues);
+        return this;
+    }
+    
+    
+    /**
+     * @param maxStringLength the maximum length of the strings
+     * @return the current policy
+     */
+    public FilterReadPolicy setMaxStringLength(int maxStringLength) {
+        this.maxStringLength = positive(maxStringLength);
+        return this;
+    }
+    
+    
+    /**
+     * @param value a limit
+     * @return the limit
+     */
+    private static int positive(int value) {
+        if(value <= 0) {
+            throw new IllegalArgumentException("The limit must be greater than zero");
+        }
+        
+        return value;
+    }
+    
+    
+    /**
+     * @return the maximum length of the strings
+     */
+    public int getMaxStringLength() {
+        return maxStringLength;
+    }
+    
+    
+    /**
+     * Creates the budget to read a single filter
+     * @return the budget
+     */
+    public ReadBudget newBudget() {
+        return new ReadBudget();
+    }
+    
+    
+    /**
+     * Creates a type criteria, if the type is whitelisted
+     * @param typeName the name or simple name of the type
+     * @param negative <code>true</code> for {@link FilterOperation#NOT_TYPE}
+     * @return the criteria
+     */
+    public FilterCriteria createTypeCriteria(String typeName, boolean negative) {
+        Class<?> type = types.get(typeName);
+        
+        if(type == null) {
+            throw new IllegalArgumentException("Type not allowed: " + typeName);
+        }
+        
+        return new TypeFilterCriteria(type, negative);
+    }
+    
+    
+    /**
+     * Creates a criteria of a field, if the field is whitelisted, converting the value into the type of the field
+     * @param operation the operation, other than the boolean and type operations
+     * @param field the name of the field, including its join path
+     * @param value the value as read from the wire format, or a list of values
+     * @return the criteria
+     */
+    public FilterCriteria createCriteria(FilterOperation operation, String field, Object value) {
+        Class<?> type = this.findFieldType(field);
+        int separator = field.lastIndexOf('.');
+        String joinName = (separator < 0) ? null : field.substring(0, separator);
+        String fieldName = field.substring(separator + 1);
+        FilterCriteria criteria;
+        
+        switch(operation) {
+        case NULL:
+        case NOT_NULL:
+            criteria = new UnaryFilterCriteria(joinName, fieldName, operation);
+            break;
+        case IN:
+            criteria = new BinaryFilterCriteria(joinName, fieldName, operation, convertAll(type, toList(operation, value)));
+            break;
+        case BETWEEN:
+            List<Object> bounds = convertAll(type, toList(operation, value));
+            if((bounds.size() != 2) || bounds.contains(null)) {
+                throw new IllegalArgumentException("The range of " + field + " must have two values");
+            }
+            criteria = new BinaryFilterCriteria(joinName, fieldName, operation, bounds);
+            break;
+        case EQUALS:
+        case NOT_EQUALS:
+            criteria = new BinaryFilterCriteria(joinName, fieldName, operation, convert(type, value));
+            break;
+        case TYPE:
+        case NOT_TYPE:
+            throw new IllegalArgumentException("Incorrect filter operation");
+        default:
+            Object converted = LikePatterns.isPatternOperation(operation) ? convert(String.class, value) : convert(type, value);
+            if(converted == null) {
+                throw new IllegalArgumentException("The value of " + field + " cannot be null");
+            }
+            criteria = new BinaryFilterCriteria(joinName, fieldName, operation, converted);
+        }
+        
+        return criteria;
+    }
+    
+    
+    /**
+     * Finds the type of a whitelisted field
+     * @param field the name of the field, including its join path
+     * @return the type, or <code>null</code> if every field is allowed
+     */
+    private Class<?> findFieldType(String field) {
+        for(String name : StringUtils.splitPreserveAllTokens(StringUtils.defaultString(field), '.')) {
+            if(!FilterSignature.isIdentifier(name)) {
+                throw new IllegalArgumentException("Incorrect field name: " + field);
+            }
+        }
+        
+        if((fields != null) && !fields.containsKey(field)) {
+            throw new IllegalArgumentException("Field not allowed: " + field);
+        }
+        
+        return (fields != null) ? fields.get(field) : null;
+    }
+    
+    
+    /**
+     * @param operation the operation
+     * @param value the value
+     * @return the values of a list operation
+     */
+    private static List<?> toList(FilterOperation operation, Object value) {
+        if(!(value instanceof List)) {
+            throw new IllegalArgumentException("The value of " + operation + " must be a list");
+        }
+        
+        return (List<?>)value;
+    }
+    
+    
+    /**
+     * @param type the target type
+     * @param values the values
+     * @return the converted values
+     */
+    private static List<Object> convertAll(Class<?> type, List<?> values) {
+        List<Object> converted = new ArrayList<>(values.size());
+        for(Object value : values) {
+            converted.add(convert(type, value));
+        }
+        
+        return converted;
+    }
+    
+    
+    /**
+     * Converts a value of the wire format into the type of a field
+     * @param type the type of the field, or <code>null</code> to keep the value
+     * @param value the value
+     * @return the converted value
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public static Object convert(Class<?> type, Object value) {
+        Object result;
+        
+        if(value instanceof Collection) {
+            throw new IllegalArgumentException("Incorrect list value");
+        } else if((value == null) || (type == null) || type.isInstance(value)) {
+            result = value;
+        } else {
+            try
+            {
+                String text = value.toString();
+                
+                if((type == Integer.class) || (type == Long.class) || (type == Short.class) || (type == Byte.class) ||
+                        (type == BigDecimal.class) || (type == BigInteger.class) || (type == Double.class) || (type == Float.class)) {
+                    result = convertNumber(type, checkDecimal(new BigDecimal(text)));
+                } else if(type == Boolean.class) {
+                    if(!"true".equals(text) && !"false".equals(text)) {
+                        throw new IllegalArgumentException("Incorrect boolean value: " + text);
+                    }
+                    result = Boolean.valueOf(text);
+                } else if(type.isEnum()) {
+                    result = Enum.valueOf((Class<Enum>)type, text);
+                } else if(type == LocalDate.class) {
+                    result = LocalDate.parse(text);
+                } else if(type == LocalDateTime.class) {
+                    result = LocalDateTime.parse(text);
+                } else if(type == LocalTime.class) {
+                    result = LocalTime.parse(text);
+                } else if(type == Instant.class) {
+                    result = Instant.parse(text);
+                } else if(type == OffsetDateTime.class) {
+                    result = OffsetDateTime.parse(text);
+                } else if(type == ZonedDateTime.class) {
+                    result = ZonedDateTime.parse(text);
+                } else if(type == java.sql.Date.class) {
+                    result = java.sql.Date.valueOf(LocalDate.parse(text));
+                } else if(type == Timestamp.class) {
+                    result = Timestamp.from(Instant.parse(text));
+                } else if(type == Date.class) {
+                    result = Date.from(Instant.parse(text));
+                } else if(type == UUID.class) {
+                    result = UUID.fromString(text);
+                } else if(type == org.joda.time.LocalDate.class) {
+                    result = org.joda.time.LocalDate.parse(text, ISODateTimeFormat.date());
+                } else if(type == org.joda.time.LocalDateTime.class) {
+                    // The ISO date time of a local date time is written without offset, so the offset is optional
+                    result = org.joda.time.LocalDateTime.parse(text, ISODateTimeFormat.dateTimeParser());
+                } else if(type == DateTime.class) {
+                    result = DateTime.parse(text, ISODateTimeFormat.dateTimeNoMillis());
+                } else if(type == String.class) {
+                    if(!(value instanceof String)) {
+                        throw new IllegalArgumentException("Incorrect string value: " + text);
+                    }
+                    result = text;
+                } else {
+                    throw new IllegalArgumentException("Unsupported field type " + type.getName());
+                }
+            }
+            catch(NumberFormatException | ArithmeticException | DateTimeParseException ex) {
+                throw new IllegalArgumentException("Incorrect value for type " + type.getSimpleName() + ": " + value, ex);
+            }
+        }
+        
+        return result;
+    }
+    
+    
+    /**
+     * Validates the precision and scale of a decimal value, since a short text such as <code>1e999999999</code>
+     * is converted into a number with a billion digits when its exact value is needed
+     * @param value the decimal value
+     * @return the decimal value
+     */
+    public static BigDecimal checkDecimal(BigDecimal value) {
+        if((value.precision() > MAX_DECIMAL_DIGITS) || (Math.abs((long)value.scale()) > MAX_DECIMAL_DIGITS)) {
+            throw new IllegalArgumentException("The decimal value exceeds the maximum precision or scale of " + MAX_DECIMAL_DIGITS);
+        }
+        
+        return value;
+    }
+    
+    
+    /**
+     * @param type the numeric type
+     * @param number the number
+     * @return the number with the given type
+     */
+    private static Object convertNumber(Class<?> type, BigDecimal number) {
+        Object result;
+        
+        if(type == Integer.class) {
+            result = number.intValueExact();
+        } else if(type == Long.class) {
+            result = number.longValueExact();
+        } else if(type == Short.class) {
+            result = number.shortValueExact();
+        } else if(type == Byte.class) {
+            result = number.byteValueExact();
+        } else if(type == BigInteger.class) {
+            result = number.toBigIntegerExact();
+        } else if(type == Double.class) {
+            result = number.doubleValue();
+        } else if(type == Float.class) {
+            result = number.floatValue();
+        } else {
+            result = number;
+        }
+        
+        return result;
+    }
+    
+    
+    /**
+     * Converts a value of a criteria into a value of the wire formats: a string, number, boolean,
+     * <code>null</code> or a list of them. Enums, dates and UUIDs are written as strings, where the Joda-Time
+     * dates use the same ISO formats as the serializers of {@link com.apolloframework.serialization.json}
+     * @param value the value
+     * @return the value of the wire format
+     */
+    public static Object toWireValue(Object value) {
+        Object result;
+        
+        if((value == null) || (value instanceof String) || (value instanceof Number) || (value instanceof Boolean)) {
+            result = value;
+        } else if(value instanceof Collection) {
+            List<Object> values = new ArrayList<>(((Collection<?>)value).size());
+            ((Collection<?>)value).forEach(v -> values.add(toWireValue(v)));
+            result = values;
+        } else if(value instanceof Enum) {
+            result = ((Enum<?>)value).name();
+        } else if(value instanceof java.sql.Date) {
+            result = ((java.sql.Date)value).toLocalDate().toString();
+        } else if(value instanceof Date) {
+            result = ((Date)value).toInstant().toString();
+        } else if((value instanceof TemporalAccessor) || (value instanceof UUID) || (value instanceof Character)) {
+            result = value.toString();
+        } else if(value instanceof org.joda.time.LocalDate) {
+            result = ISODateTimeFormat.date().print((org.joda.time.LocalDate)value);
+        } else if(value instanceof org.joda.time.LocalDateTime) {
+            result = ISODateTimeFormat.dateTime().print((org.joda.time.LocalDateTime)value);
+        } else if(value instanceof DateTime) {
+            result = ISODateTimeFormat.dateTimeNoMillis().print((DateTime)value);
+        } else {
+            throw new IllegalArgumentException("Unsupported value type " + value.getClass().getName());
+        }
+        
+        return result;
+    }
+    
+    
+    
+    
+    /**
+     * Limits of the filter being read, updated as the criteria and the values are read
+     */
+    public final class ReadBudget {
+        private int depth;
+        private int nodes;
+        private int values;
+        
+        /**
+         * Private constructor
+         */
+        private ReadBudget() {
+        }
+        
+        /**
+         * Registers a criteria, nested in the current one
+         */
+        public void enter() {
+            if(++depth > maxDepth) {
+                throw new IllegalArgumentException("The filter exceeds the maximum depth of " + maxDepth);
+            }
+            
+            if(++nodes > maxNodes) {
+                throw new IllegalArgumentException("The filter exceeds the maximum number of criteria of " + maxNodes);
+            }
+        }
+        
+        /**
+         * Registers the end of the current criteria
+         */
+        public void exit() {
+            depth--;
+        }
+        
+        /**
+         * Registers the values of a criteria
+         * @param count the number of values
+         */
+        public void addValues(int count) {
+            if((count < 0) || (count > maxValues - values)) {
+                throw new IllegalArgumentException("The filter exceeds the maximum number of values of " + maxValues);
+            }
+            
+            values += count;
+        }
+        
+        /**
+         * Validates the length of a string
+         * @param length the length of the string
+         */
+        public void checkString(int length) {
+            if(length > maxStringLength) {
+                throw new IllegalArgumentException("The filter exceeds the maximum string length of " + maxStringLength);
+            }
+        }
+    }
+}
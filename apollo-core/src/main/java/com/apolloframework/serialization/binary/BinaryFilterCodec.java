@@ -0,0 +1,430 @@
+package com.apolloframework.serialization.binary;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.persistence.criteria.Predicate.BooleanOperator;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.apolloframework.query.BaseFilterCriteria;
+import com.apolloframework.query.BinaryFilterCriteria;
+import com.apolloframework.query.BooleanFilterCriteria;
+import com.apolloframework.query.FilterCriteria;
+import com.apolloframework.query.FilterOperation;
+import com.apolloframework.query.NotFilterCriteria;
+import com.apolloframework.query.TypeFilterCriteria;
+import com.apolloframework.query.UnaryFilterCriteria;
+import com.apolloframework.serialization.FilterReadPolicy;
+import com.apolloframework.serialization.FilterReadPolicy.ReadBudget;
+
+/**
+ * Compact binary encoding of {@link FilterCriteria} objects, e.g. to keep filters in caches or messages.
+ * After the version, every criteria starts with a tag byte, followed by the field name, the type name or
+ * the nested criteria. Counts and integers are written as variable-length integers, and every string is
+ * written once: the repeated strings (e.g. the field of several criteria) are references to the first one.
+ * The decoder reads the criteria directly from the bytes and validates them with a {@link FilterReadPolicy},
+ * checking every length before allocating it
+ * @author amarenco
+ *
+ */
+public final class BinaryFilterCodec {
+    /** Version of the format */
+    private static final byte VERSION = 1;
+    
+    private static final byte TAG_AND = 1;
+    private static final byte TAG_OR = 2;
+    private static final byte TAG_NOT = 3;
+    private static final byte TAG_TYPE = 4;
+    private static final byte TAG_NOT_TYPE = 5;
+    /** Tag of the first field operation, followed by the codes of {@link #OPERATIONS} */
+    private static final byte TAG_OPERATION = 16;
+    
+    private static final byte VALUE_NULL = 0;
+    private static final byte VALUE_FALSE = 1;
+    private static final byte VALUE_TRUE = 2;
+    private static final byte VALUE_INT = 3;
+    private static final byte VALUE_LONG = 4;
+    private static final byte VALUE_DOUBLE = 5;
+    private static final byte VALUE_BIG_INTEGER = 6;
+    private static final byte VALUE_BIG_DECIMAL = 7;
+    private static final byte VALUE_STRING = 8;
+    private static final byte VALUE_LIST = 9;
+    
+    /** The field operations by their code, which must never be reordered since they are part of the format */
+    private static final List<FilterOperation> OPERATIONS = Arrays.asList(
+            FilterOperation.EQUALS,
+            FilterOperation.NOT_EQUALS,
+            FilterOperation.NULL,
+            FilterOperation.NOT_NULL,
+            FilterOperation.IN,
+            FilterOperation.GREATER_THAN,
+            FilterOperation.GREATER_THAN_OR_EQUALS,
+            FilterOperation.LESS_THAN,
+            FilterOperation.LESS_THAN_OR_EQUALS,
+            FilterOperation.BETWEEN,
+            FilterOperation.LIKE,
+            FilterOperation.STARTS_WITH,
+            FilterOperation.ENDS_WITH,
+            FilterOperation.CONTAINS,
+            FilterOperation.LIKE_IGNORE_CASE,
+            FilterOperation.STARTS_WITH_IGNORE_CASE,
+            FilterOperation.ENDS_WITH_IGNORE_CASE,
+            FilterOperation.CONTAINS_IGNORE_CASE);
+    
+    
+    /**
+     * Utility class
+     */
+    private BinaryFilterCodec() {
+    }
+    
+    
+    /**
+     * Encodes a criteria
+     * @param criteria the criteria
+     * @return the encoded criteria
+     */
+    public static byte[] encode(FilterCriteria criteria) {
+        if(criteria == null) {
+            throw new IllegalArgumentException("The criteria cannot be null");
+        }
+        
+        Encoder encoder = new Encoder();
+        encoder.out.write(VERSION);
+        encoder.writeCriteria(criteria);
+        return encoder.out.toByteArray();
+    }
+    
+    
+    /**
+     * Decodes a criteria
+     * @param data the encoded criteria
+     * @param policy the policy to validate the criteria
+     * @return the criteria
+     */
+    public static FilterCriteria decode(byte[] data, FilterReadPolicy policy) {
+        Decoder decoder = new Decoder(ByteBuffer.wrap(data), policy);
+        
+        try
+        {
+            if(decoder.buffer.get() != VERSION) {
+                throw new IllegalArgumentException("Unsupported version of the filter format");
+            }
+            
+            FilterCriteria criteria = decoder.readCriteria();
+            
+            if(decoder.buffer.hasRemaining()) {
+                throw new IllegalArgumentException("Unexpected content after the filter");
+            }
+            
+            return criteria;
+        }
+        catch(BufferUnderflowException ex) {
+            throw new IllegalArgumentException("The filter is truncated", ex);
+        }
+    }
+    
+    
+    
+    
+    /**
+     * Writes the criteria, keeping the strings already written
+     */
+    private static final class Encoder {
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream(64);
+        private final Map<String, Integer> strings = new HashMap<>();
+        
+        /**
+         * @param criteria the criteria to write
+         */
+        private void writeCriteria(FilterCriteria criteria) {
+            if(criteria instanceof BooleanFilterCriteria) {
+                List<FilterCriteria> filters = ((BooleanFilterCriteria)criteria).getFilters();
+                out.write((((BooleanFilterCriteria)criteria).getOperator() == BooleanOperator.AND) ? TAG_AND : TAG_OR);
+                writeVarLong(filters.size());
+                filters.forEach(this::writeCriteria);
+            } else if(criteria instanceof NotFilterCriteria) {
+                out.write(TAG_NOT);
+                writeCriteria(((NotFilterCriteria)criteria).getFilter());
+            } else if(criteria instanceof TypeFilterCriteria) {
+                out.write((((TypeFilterCriteria)criteria).getOperation() == FilterOperation.TYPE) ? TAG_TYPE : TAG_NOT_TYPE);
+                writeString(((TypeFilterCriteria)criteria).getClazzType().getName());
+            } else if((criteria instanceof UnaryFilterCriteria) || (criteria instanceof BinaryFilterCriteria)) {
+                BaseFilterCriteria baseFilter = (BaseFilterCriteria)criteria;
+                out.write(TAG_OPERATION + OPERATIONS.indexOf(baseFilter.getOperation()));
+                writeString(StringUtils.isBlank(baseFilter.getJoinName()) ?
+                        baseFilter.getFieldName() : baseFilter.getJoinName() + "." + baseFilter.getFieldName());
+                if(criteria instanceof BinaryFilterCriteria) {
+                    writeValue(FilterReadPolicy.toWireValue(((BinaryFilterCriteria)criteria).getValue()));
+                }
+            } else {
+                throw new IllegalArgumentException("Unsupported criteria " + ((criteria != null) ? criteria.getClass().getName() : null));
+            }
+        }
+        
+        /**
+         * @param value the value of the wire format to write
+         */
+        private void writeValue(Object value) {
+            if(value == null) {
+                out.write(VALUE_NULL);
+            } else if(value instanceof List) {
+                out.write(VALUE_LIST);
+                writeVarLong(((List<?>)value).size());
+                ((List<?>)value).forEach(this::writeValue);
+            } else if(value instanceof Boolean) {
+                out.write(((Boolean)value) ? VALUE_TRUE : VALUE_FALSE);
+            } else if((value instanceof Integer) || (value instanceof Short) || (value instanceof Byte)) {
+                out.write(VALUE_INT);
+                writeSignedVarLong(((Number)value).intValue());
+            } else if(value instanceof Long) {
+                out.write(VALUE_LONG);
+                writeSignedVarLong((Long)value);
+            } else if(value instanceof BigInteger) {
+                out.write(VALUE_BIG_INTEGER);
+                writeString(value.toString());
+            } else if(value instanceof BigDecimal) {
+                out.write(VALUE_BIG_DECIMAL);
+                writeString(value.toString());
+            } else if(value instanceof Number) {
+                long bits = Double.doubleToLongBits(((Number)value).doubleValue());
+                out.write(VALUE_DOUBLE);
+                for(int shift = 56; shift >= 0; shift -= 8) {
+                    out.write((int)(bits >>> shift));
+                }
+            } else {
+                out.write(VALUE_STRING);
+                writeString(value.toString());
+            }
+        }
+        
+        /**
+         * Writes a string, or the reference to the same string if it was already written
+         * @param value the string
+         */
+        private void writeString(String value) {
+            Integer index = strings.get(value);
+            
+            if(index != null) {
+                writeVarLong(index + 1);
+            } else {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                strings.put(value, strings.size());
+                writeVarLong(0);
+                writeVarLong(bytes.length);
+                out.write(bytes, 0, bytes.length);
+            }
+        }
+        
+        /**
+         * @param value a signed number, written with the zigzag encoding
+         */
+        private void writeSignedVarLong(long value) {
+            writeVarLong((value << 1) ^ (value >> 63));
+        }
+        
+        /**
+         * @param value an unsigned number, written in groups of 7 bits
+         */
+        private void writeVarLong(long value) {
+            long remaining = value;
+            while((remaining & ~0x7FL) != 0) {
+                out.write((int)((remaining & 0x7F) | 0x80));
+                remaining >>>= 7;
+            }
+            out.write((int)remaining);
+        }
+    }
+    
+    
+    
+    
+    /**
+     * Reads the criteria, validating them with the policy
+     */
+    private static final class Decoder {
+        private final ByteBuffer buffer;
+        private final FilterReadPolicy policy;
+        private final ReadBudget budget;
+        private final List<String> strings = new ArrayList<>();
+        
+        /**
+         * @param buffer the encoded criteria
+         * @param policy the policy to validate the criteria
+         */
+        private Decoder(ByteBuffer buffer, FilterReadPolicy policy) {
+            this.buffer = buffer;
+            this.policy = policy;
+            this.budget = policy.newBudget();
+        }
+        
+        /**
+         * @return the criteria read
+         */
+        private FilterCriteria readCriteria() {
+            FilterCriteria criteria;
+            int tag = buffer.get() & 0xFF;
+            
+            budget.enter();
+            
+            if((tag == TAG_AND) || (tag == TAG_OR)) {
+                int count = readCount();
+                List<FilterCriteria> filters = new ArrayList<>(Math.min(count, buffer.remaining()));
+                for(int i = 0; i < count; i++) {
+                    filters.add(readCriteria());
+                }
+                criteria = new BooleanFilterCriteria((tag == TAG_AND) ? BooleanOperator.AND : BooleanOperator.OR, filters);
+            } else if(tag == TAG_NOT) {
+                criteria = new NotFilterCriteria(readCriteria());
+            } else if((tag == TAG_TYPE) || (tag == TAG_NOT_TYPE)) {
+                criteria = policy.createTypeCriteria(readString(), tag == TAG_NOT_TYPE);
+            } else if((tag >= TAG_OPERATION) && (tag < TAG_OPERATION + OPERATIONS.size())) {
+                FilterOperation operation = OPERATIONS.get(tag - TAG_OPERATION);
+                String field = readString();
+                boolean unary = (operation == FilterOperation.NULL) || (operation == FilterOperation.NOT_NULL);
+                criteria = policy.createCriteria(operation, field, unary ? null : readValue(true));
+            } else {
+                throw new IllegalArgumentException("Unknown filter tag " + tag);
+            }
+            
+            budget.exit();
+            return criteria;
+        }
+        
+        /**
+         * @param allowList <code>true</code> if the value can be a list
+         * @return the value read
+         */
+        private Object readValue(boolean allowList) {
+            Object value;
+            byte tag = buffer.get();
+            
+            switch(tag) {
+            case VALUE_NULL:
+                value = null;
+                break;
+            case VALUE_FALSE:
+                value = Boolean.FALSE;
+                break;
+            case VALUE_TRUE:
+                value = Boolean.TRUE;
+                break;
+            case VALUE_INT:
+                long number = readSignedVarLong();
+                if((number < Integer.MIN_VALUE) || (number > Integer.MAX_VALUE)) {
+                    throw new IllegalArgumentException("Incorrect integer value");
+                }
+                value = (int)number;
+                break;
+            case VALUE_LONG:
+                value = readSignedVarLong();
+                break;
+            case VALUE_DOUBLE:
+                value = buffer.getDouble();
+                break;
+            case VALUE_BIG_INTEGER:
+                value = new BigInteger(readString());
+                break;
+            case VALUE_BIG_DECIMAL:
+                value = FilterReadPolicy.checkDecimal(new BigDecimal(readString()));
+                break;
+            case VALUE_STRING:
+                value = readString();
+                break;
+            case VALUE_LIST:
+                if(!allowList) {
+                    throw new IllegalArgumentException("Nested lists are not allowed");
+                }
+                int count = readCount();
+                budget.addValues(count);
+                List<Object> values = new ArrayList<>(count);
+                for(int i = 0; i < count; i++) {
+                    values.add(readValue(false));
+                }
+                // The elements were already counted with the list
+                return values;
+            default:
+                throw new IllegalArgumentException("Unknown value tag " + tag);
+            }
+            
+            if(allowList) {
+                budget.addValues(1);
+            }
+            
+            return value;
+        }
+        
+        /**
+         * @return the string read, or the string it references
+         */
+        private String readString() {
+            int reference = readCount();
+            String value;
+            
+            if(reference > 0) {
+                if(reference > strings.size()) {
+                    throw new IllegalArgumentException("Incorrect string reference");
+                }
+                value = strings.get(reference - 1);
+            } else {
+                int length = readCount();
+                if((length > buffer.remaining()) || (length > 4L * policy.getMaxStringLength())) {
+                    throw new IllegalArgumentException("Incorrect string length");
+                }
+                
+                value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+                buffer.position(buffer.position() + length);
+                budget.checkString(value.length());
+                strings.add(value);
+            }
+            
+            return value;
+        }
+        
+        /**
+         * @return a count or length, which must fit in an integer
+         */
+        private int readCount() {
+            long count = readVarLong();
+            if((count < 0) || (count > Integer.MAX_VALUE)) {
+                throw new IllegalArgumentException("Incorrect count in the filter");
+            }
+            
+            return (int)count;
+        }
+        
+        /**
+         * @return a signed number written with the zigzag encoding
+         */
+        private long readSignedVarLong() {
+            long value = readVarLong();
+            return (value >>> 1) ^ -(value & 1);
+        }
+        
+        /**
+         * @return an unsigned number written in groups of 7 bits
+         */
+        private long readVarLong() {
+            long value = 0;
+            for(int shift = 0; shift < 64; shift += 7) {
+                byte current = buffer.get();
+                value |= (long)(current & 0x7F) << shift;
+                if((current & 0x80) == 0) {
+                    return value;
+                }
+            }
+            
+            throw new IllegalArgumentException("Incorrect number in the filter");
+        }
+    }
+}
@@ -0,0 +1,436 @@
+package com.apolloframework.serialization.json;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.persistence.criteria.Predicate.BooleanOperator;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.apolloframework.query.BaseFilterCriteria;
+import com.apolloframework.query.BinaryFilterCriteria;
+import com.apolloframework.query.BooleanFilterCriteria;
+import com.apolloframework.query.FilterCriteria;
+import com.apolloframework.query.FilterOperation;
+import com.apolloframework.query.NotFilterCriteria;
+import com.apolloframework.query.TypeFilterCriteria;
+import com.apolloframework.query.UnaryFilterCriteria;
+import com.apolloframework.serialization.FilterReadPolicy;
+import com.apolloframework.serialization.FilterReadPolicy.ReadBudget;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+
+/**
+ * Provides the {@link JsonSerializer} and {@link JsonDeserializer} for {@link FilterCriteria} objects.
+ * Every criteria is an object with its operation, e.g.
+ * <pre>
+ * {"op": "AND", "filters": [
+ *     {"op": "EQUALS", "field": "customer.status", "value": "ACTIVE"},
+ *     {"op": "NOT", "filter": {"op": "IN", "field": "id", "value": [1, 2]}},
+ *     {"op": "TYPE", "type": "com.example.Customer"}]}
+ * </pre>
+ * The criteria are read with the streaming API of Jackson, without building a tree of JSON nodes,
+ * and validated with a {@link FilterReadPolicy}
+ * @author amarenco
+ *
+ */
+public class JsonFilterCriteria {
+    
+    /** Factory of the parsers and generators of the utility methods */
+    private static final JsonFactory FACTORY = new JsonFactory();
+    
+    private static final String OPERATION = "op";
+    private static final String FIELD = "field";
+    private static final String VALUE = "value";
+    private static final String TYPE = "type";
+    private static final String FILTER = "filter";
+    private static final String FILTERS = "filters";
+    private static final String NOT = "NOT";
+    
+    
+    /**
+     * Utility class
+     */
+    private JsonFilterCriteria() {
+    }
+    
+    
+    /**
+     * Writes a criteria as JSON
+     * @param criteria the criteria
+     * @return the JSON
+     */
+    public static String toJson(FilterCriteria criteria) {
+        StringWriter writer = new StringWriter();
+        
+        try(JsonGenerator generator = FACTORY.createGenerator(writer)) {
+            write(generator, criteria);
+        }
+        catch(IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        
+        return writer.toString();
+    }
+    
+    
+    /**
+     * Reads a criteria from JSON
+     * @param json the JSON
+     * @param policy the policy to validate the criteria
+     * @return the criteria, or <code>null</code> for a <code>null</code> JSON value
+     * @throws IOException if the JSON is malformed
+     */
+    public static FilterCriteria fromJson(String json, FilterReadPolicy policy) throws IOException {
+        try(JsonParser parser = FACTORY.createParser(json)) {
+            FilterCriteria criteria = read(parser, policy);
+            
+            if(parser.nextToken() != null) {
+                throw new IllegalArgumentException("Unexpected content after the filter");
+            }
+            
+            return criteria;
+        }
+    }
+    
+    
+    /**
+     * Writes a criteria
+     * @param generator the generator
+     * @param criteria the criteria, or <code>null</code>
+     * @throws IOException if the criteria cannot be written
+     */
+    public static void write(JsonGenerator generator, FilterCriteria criteria) throws IOException {
+        if(criteria == null) {
+            generator.writeNull();
+        } else if(criteria instanceof BooleanFilterCriteria) {
+            generator.writeStartObject();
+            generator.writeStringField(OPERATION, ((BooleanFilterCriteria)criteria).getOperator().name());
+            generator.writeArrayFieldStart(FILTERS);
+            for(FilterCriteria filter : ((BooleanFilterCriteria)criteria).getFilters()) {
+                write(generator, filter);
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        } else if(criteria instanceof NotFilterCriteria) {
+            generator.writeStartObject();
+            generator.writeStringField(OPERATION, NOT);
+            generator.writeFieldName(FILTER);
+            write(generator, ((NotFilterCriteria)criteria).getFilter());
+            generator.writeEndObject();
+        } else if(criteria instanceof TypeFilterCriteria) {
+            generator.writeStartObject();
+            generator.writeStringField(OPERATION, ((TypeFilterCriteria)criteria).getOperation().name());
+            generator.writeStringField(TYPE, ((TypeFilterCriteria)criteria).getClazzType().getName());
+            generator.writeEndObject();
+        } else if((criteria instanceof UnaryFilterCriteria) || (criteria instanceof BinaryFilterCriteria)) {
+            BaseFilterCriteria baseFilter = (BaseFilterCriteria)criteria;
+            
+            generator.writeStartObject();
+            generator.writeStringField(OPERATION, baseFilter.getOperation().name());
+            generator.writeStringField(FIELD, StringUtils.isBlank(baseFilter.getJoinName()) ?
+                    baseFilter.getFieldName() : baseFilter.getJoinName() + "." + baseFilter.getFieldName());
+            if(criteria instanceof BinaryFilterCriteria) {
+                generator.writeFieldName(VALUE);
+                writeValue(generator, FilterReadPolicy.toWireValue(((BinaryFilterCriteria)criteria).getValue()));
+            }
+            generator.writeEndObject();
+        } else {
+            throw new IllegalArgumentException("Unsupported criteria " + criteria.getClass().getName());
+        }
+    }
+    
+    
+    /**
+     * Writes a value of the wire format
+     * @param generator the generator
+     * @param value the value
+     * @throws IOException if the value cannot be written
+     */
+    private static void writeValue(JsonGenerator generator, Object value) throws IOException {
+        if(value == null) {
+            generator.writeNull();
+        } else if(value instanceof List) {
+            generator.writeStartArray();
+            for(Object element : (List<?>)value) {
+                writeValue(generator, element);
+            }
+            generator.writeEndArray();
+        } else if(value instanceof Boolean) {
+            generator.writeBoolean((Boolean)value);
+        } else if((value instanceof Integer) || (value instanceof Short) || (value instanceof Byte)) {
+            generator.writeNumber(((Number)value).intValue());
+        } else if(value instanceof Long) {
+            generator.writeNumber((Long)value);
+        } else if(value instanceof BigInteger) {
+            generator.writeNumber((BigInteger)value);
+        } else if(value instanceof BigDecimal) {
+            generator.writeNumber((BigDecimal)value);
+        } else if(value instanceof Number) {
+            generator.writeNumber(((Number)value).doubleValue());
+        } else {
+            generator.writeString(value.toString());
+        }
+    }
+    
+    
+    /**
+     * Reads a criteria, starting at the current token or at the next one if the parser was not started
+     * @param parser the parser
+     * @param policy the policy to validate the criteria
+     * @return the criteria, or <code>null</code> for a <code>null</code> JSON value
+     * @throws IOException if the JSON is malformed
+     */
+    public static FilterCriteria read(JsonParser parser, FilterReadPolicy policy) throws IOException {
+        JsonToken token = parser.hasCurrentToken() ? parser.getCurrentToken() : parser.nextToken();
+        return (token == JsonToken.VALUE_NULL) ? null : readCriteria(parser, policy, policy.newBudget());
+    }
+    
+    
+    /**
+     * Reads a criteria object
+     * @param parser the parser, at the start of the object
+     * @param policy the policy to validate the criteria
+     * @param budget the limits of the filter
+     * @return the criteria
+     * @throws IOException if the JSON is malformed
+     */
+    private static FilterCriteria readCriteria(JsonParser parser, FilterReadPolicy policy, ReadBudget budget) throws IOException {
+        if(parser.getCurrentToken() != JsonToken.START_OBJECT) {
+            throw new IllegalArgumentException("A filter must be an object");
+        }
+        
+        budget.enter();
+        
+        String operation = null;
+        String field = null;
+        String type = null;
+        Object value = null;
+        boolean hasValue = false;
+        FilterCriteria filter = null;
+        List<FilterCriteria> filters = null;
+        
+        while(parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            parser.nextToken();
+            
+            if(OPERATION.equals(name) && (operation == null)) {
+                operation = readString(parser, budget);
+            } else if(FIELD.equals(name) && (field == null)) {
+                field = readString(parser, budget);
+            } else if(TYPE.equals(name) && (type == null)) {
+                type = readString(parser, budget);
+            } else if(VALUE.equals(name) && !hasValue) {
+                value = readValue(parser, budget, true);
+                hasValue = true;
+            } else if(FILTER.equals(name) && (filter == null)) {
+                filter = readCriteria(parser, policy, budget);
+            } else if(FILTERS.equals(name) && (filters == null)) {
+                if(parser.getCurrentToken() != JsonToken.START_ARRAY) {
+                    throw new IllegalArgumentException("The filters must be an array");
+                }
+                
+                filters = new ArrayList<>();
+                while(parser.nextToken() != JsonToken.END_ARRAY) {
+                    filters.add(readCriteria(parser, policy, budget));
+                }
+            } else {
+                throw new IllegalArgumentException("Unexpected property: " + name);
+            }
+        }
+        
+        budget.exit();
+        
+        if(operation == null) {
+            throw new IllegalArgumentException("The operation of the filter is missing");
+        }
+        
+        FilterCriteria criteria;
+        
+        if(BooleanOperator.AND.name().equals(operation) || BooleanOperator.OR.name().equals(operation)) {
+            expect((filters != null) && (field == null) && (type == null) && !hasValue && (filter == null), operation);
+            criteria = new BooleanFilterCriteria(BooleanOperator.valueOf(operation), filters);
+        } else if(NOT.equals(operation)) {
+            expect((filter != null) && (field == null) && (type == null) && !hasValue && (filters == null), operation);
+            criteria = new NotFilterCriteria(filter);
+        } else {
+            FilterOperation filterOperation = parseOperation(operation);
+            
+            if((filterOperation == FilterOperation.TYPE) || (filterOperation == FilterOperation.NOT_TYPE)) {
+                expect((type != null) && (field == null) && !hasValue && (filter == null) && (filters == null), operation);
+                criteria = policy.createTypeCriteria(type, filterOperation == FilterOperation.NOT_TYPE);
+            } else {
+                boolean unary = (filterOperation == FilterOperation.NULL) || (filterOperation == FilterOperation.NOT_NULL);
+                expect((field != null) && (type == null) && (hasValue != unary) && (filter == null) && (filters == null), operation);
+                criteria = policy.createCriteria(filterOperation, field, value);
+            }
+        }
+        
+        return criteria;
+    }
+    
+    
+    /**
+     * Reads a value, or a list of values
+     * @param parser the parser, at the value
+     * @param budget the limits of the filter
+     * @param allowList <code>true</code> if the value can be a list
+     * @return the value
+     * @throws IOException if the JSON is malformed
+     */
+    private static Object readValue(JsonParser parser, ReadBudget budget, boolean allowList) throws IOException {
+        Object value;
+        
+        switch(parser.getCurrentToken()) {
+        case START_ARRAY:
+            if(!allowList) {
+                throw new IllegalArgumentException("Nested lists are not allowed");
+            }
+            List<Object> values = new ArrayList<>();
+            while(parser.nextToken() != JsonToken.END_ARRAY) {
+                values.add(readValue(parser, budget, false));
+            }
+            value = values;
+            break;
+        case VALUE_STRING:
+            value = readString(parser, budget);
+            break;
+        case VALUE_NUMBER_INT:
+            budget.checkString(parser.getTextLength());
+            value = parser.getNumberValue();
+            break;
+        case VALUE_NUMBER_FLOAT:
+            budget.checkString(parser.getTextLength());
+            value = FilterReadPolicy.checkDecimal(parser.getDecimalValue());
+            break;
+        case VALUE_TRUE:
+        case VALUE_FALSE:
+            value = parser.getBooleanValue();
+            break;
+        case VALUE_NULL:
+            value = null;
+            break;
+        default:
+            throw new IllegalArgumentException("Unexpected value " + parser.getCurrentToken());
+        }
+        
+        if(!(value instanceof List)) {
+            budget.addValues(1);
+        }
+        
+        return value;
+    }
+    
+    
+    /**
+     * Reads a string, validating its length before creating it
+     * @param parser the parser, at the string
+     * @param budget the limits of the filter
+     * @return the string
+     * @throws IOException if the JSON is malformed
+     */
+    private static String readString(JsonParser parser, ReadBudget budget) throws IOException {
+        if(parser.getCurrentToken() != JsonToken.VALUE_STRING) {
+            throw new IllegalArgumentException("Expected a string but found " + parser.getCurrentToken());
+        }
+        
+        budget.checkString(parser.getTextLength());
+        return parser.getText();
+    }
+    
+    
+    /**
+     * @param operation the name of the operation
+     * @return the operation
+     */
+    private static FilterOperation parseOperation(String operation) {
+        for(FilterOperation filterOperation : FilterOperation.values()) {
+            if(filterOperation.name().equals(operation)) {
+                return filterOperation;
+            }
+        }
+        
+        throw new IllegalArgumentException("Unknown filter operation: " + operation);
+    }
+    
+    
+    /**
+     * Validates the properties of a criteria
+     * @param valid <code>true</code> if the criteria has the expected properties
+     * @param operation the operation of the criteria
+     */
+    private static void expect(boolean valid, String operation) {
+        if(!valid) {
+            throw new IllegalArgumentException("Incorrect properties for the operation " + operation);
+        }
+    }
+    
+    
+    
+    
+    /**
+     * Implements the {@link JsonSerializer} for {@link FilterCriteria} objects
+     * @author amarenco
+     *
+     */
+    public static class Serializer extends JsonSerializer<FilterCriteria> {
+        @Override
+        public void serialize(FilterCriteria value, JsonGenerator gen, SerializerProvider serializers)
+                throws IOException, JsonProcessingException {
+            
+            write(gen, value);
+        }
+    }
+    
+    
+    /**
+     * Implements the {@link JsonDeserializer} for {@link FilterCriteria} objects. The default constructor,
+     * used by the annotations, uses a closed {@link FilterReadPolicy} that rejects every field, so the filters
+     * are read by subclasses or registered deserializers with the policy of their whitelisted fields
+     * (e.g. <code>super(new FilterReadPolicy().allowField("status", Status.class))</code>)
+     * @author amarenco
+     *
+     */
+    public static class Deserializer extends JsonDeserializer<FilterCriteria> {
+        private final FilterReadPolicy policy;
+        
+        /**
+         * Default constructor
+         */
+        public Deserializer() {
+            this(new FilterReadPolicy());
+        }
+        
+        /**
+         * @param policy the policy to validate the criteria
+         */
+        public Deserializer(FilterReadPolicy policy) {
+            this.policy = policy;
+        }
+        
+        @Override
+        public FilterCriteria deserialize(JsonParser p, DeserializationContext ctxt)
+                throws IOException, JsonProcessingException {
+            try
+            {
+                return read(p, policy);
+            }
+            catch(IllegalArgumentException ex) {
+                throw JsonMappingException.from(p, ex.getMessage(), ex);
+            }
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.apolloframework.query;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+/**
+ * Tests for the {@link Aggregate}
+ * @author amarenco
+ *
+ */
+public class AggregateTest {
+    
+    /**
+     * Validates the functions, fields and default aliases of the aggregate functions
+     */
+    @Test
+    public void testAliases() {
+        assertEquals("count(*)", Aggregate.count().getAlias());
+        assertNull(Aggregate.count().getFieldPath());
+        assertEquals("count(field1)", Aggregate.count("field1").getAlias());
+        assertEquals("count_distinct(join1.field1)", Aggregate.countDistinct("join1.field1").getAlias());
+        assertEquals("sum(field1)", Aggregate.sum("field1").getAlias());
+        assertEquals("avg(field1)", Aggregate.avg("field1").getAlias());
+        assertEquals("min(field1)", Aggregate.min("field1").getAlias());
+        assertEquals("max(field1)", Aggregate.max("field1").getAlias());
+        
+        Aggregate aggregate = Aggregate.sum("join1.field1").as("total");
+        
+        assertEquals(AggregateFunction.SUM, aggregate.getFunction());
+        assertEquals("join1.field1", aggregate.getFieldPath());
+        assertEquals("total", aggregate.getAlias());
+    }
+    
+    
+    
+    
+    /**
+     * Validates that the functions other than count require a field
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testMissingField() {
+        Aggregate.sum(null);
+    }
+    
+    
+    
+    
+    /**
+     * Validates that the aliases cannot be empty
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testEmptyAlias() {
+        Aggregate.count().as(" ");
+    }
+}
@@ -0,0 +1,86 @@
+package com.apolloframework.query;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import javax.persistence.criteria.JoinType;
+
+import org.junit.Test;
+
+/**
+ * Tests for the {@link FilterBuilder}
+ * @author amarenco
+ *
+ */
+public class FilterBuilderTest {
+    
+    /**
+     * Validates the fetch plan of the builder
+     */
+    @Test
+    public void testFetchPlan() {
+        FilterBuilder builder = Filters.equals("field1", 1).toBuilder();
+        
+        assertFalse(builder.hasFetchPlan());
+        assertTrue(builder.getFetches().isEmpty());
+        assertNull(builder.getEntityGraph());
+        
+        builder.fetch("join1").fetch("join2.join3", JoinType.INNER);
+        
+        assertTrue(builder.hasFetchPlan());
+        assertEquals(Arrays.asList("join1", "join2.join3"), new ArrayList<>(builder.getFetches().keySet()));
+        assertEquals(JoinType.LEFT, builder.getFetches().get("join1"));
+        assertEquals(JoinType.INNER, builder.getFetches().get("join2.join3"));
+        
+        builder = Filters.equals("field1", 1).toBuilder().withEntityGraph("graph1");
+        
+        assertTrue(builder.hasFetchPlan());
+        assertEquals("graph1", builder.getEntityGraph());
+    }
+    
+    
+    
+    
+    /**
+     * Validates that combined builders keep the joins and the fetch plan
+     */
+    @Test
+    public void testCombine() {
+        FilterBuilder builder = Filters.equals("field1", 1).toBuilder()
+                .defineJoin("join1", JoinType.LEFT)
+                .fetch("join2")
+                .withEntityGraph("graph1");
+        FilterBuilder combined = builder.combine(Filters.equals("field2", 2));
+        
+        assertEquals("[join2]", combined.getFetches().keySet().toString());
+        assertEquals("graph1", combined.getEntityGraph());
+        assertEquals(JoinType.LEFT, combined.joinMap.get("join1"));
+        assertEquals("(field1 EQUALS 1 AND field2 EQUALS 2)", String.valueOf(combined.filter));
+        
+        // The original builder is not modified
+        assertEquals("field1 EQUALS 1", String.valueOf(builder.filter));
+    }
+    
+    
+    
+    
+    /**
+     * Validates that builders selecting the same entities share the cache key
+     */
+    @Test
+    public void testCacheKey() {
+        FilterBuilder first = Filters.or(Filters.equals("field1", 1), Filters.equals("field1", 2)).toBuilder().defineJoin("join1", JoinType.LEFT);
+        FilterBuilder second = Filters.in("field1", 1, 2).toBuilder().defineJoin("join1", JoinType.LEFT).fetch("join2");
+        
+        assertEquals(first.toCacheKey(), second.toCacheKey());
+        assertEquals(first.toCacheKey().hashCode(), second.toCacheKey().hashCode());
+        assertNotEquals(first.toCacheKey(), Filters.in("field1", 1, 2).toBuilder().toCacheKey());
+        assertNotEquals(first.toCacheKey(), Filters.in("field1", 1, 3).toBuilder().defineJoin("join1", JoinType.LEFT).toCacheKey());
+    }
+}
@@ -0,0 +1,96 @@
+package com.apolloframework.query;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests for the equality, immutability and interning of the {@link FilterCriteria}
+ * @author amarenco
+ *
+ */
+public class FilterCriteriaTest {
+    
+    /**
+     * Validates the structural equality of the criteria
+     */
+    @Test
+    public void testEquality() {
+        FilterCriteria first = Filters.and(Filters.equals("field1", 1), Filters.not(Filters.in("join1", "field2", 1, 2)), Filters.type(String.class));
+        FilterCriteria second = Filters.and(Filters.equals("field1", 1), Filters.not(Filters.in("join1", "field2", Arrays.asList(1, 2))), Filters.type(String.class));
+        
+        assertEquals(first, second);
+        assertEquals(first.hashCode(), second.hashCode());
+        assertEquals(Filters.isNull("field1"), Filters.isNull("", "field1"));
+        
+        assertNotEquals(Filters.equals("field1", 1), Filters.equals("field1", 2));
+        assertNotEquals(Filters.equals("field1", 1), Filters.notEquals("field1", 1));
+        assertNotEquals(Filters.equals("field1", 1), Filters.equals("join1", "field1", 1));
+        assertNotEquals(Filters.and(Filters.equals("field1", 1)), Filters.or(Filters.equals("field1", 1)));
+        assertNotEquals(Filters.type(String.class), Filters.notType(String.class));
+        assertNotEquals(Filters.isNull("field1"), Filters.isNotNull("field1"));
+    }
+    
+    
+    
+    
+    /**
+     * Validates that the criteria cannot be modified once created
+     */
+    @Test
+    public void testImmutability() {
+        List<Object> values = new ArrayList<>(Arrays.asList(1, 2));
+        FilterCriteria in = Filters.in("field1", values);
+        values.add(3);
+        
+        assertEquals(Arrays.asList(1, 2), ((BinaryFilterCriteria)in).getValue());
+        
+        BooleanFilterCriteria and = Filters.and(Filters.equals("field1", 1));
+        BooleanFilterCriteria extended = and.with(Filters.equals("field2", 2));
+        
+        assertEquals(1, and.getFilters().size());
+        assertEquals(2, extended.getFilters().size());
+        
+        // A builder never modifies the criteria shared with other builders
+        FilterBuilder builder = and.toBuilder().and(Filters.equals("field3", 3));
+        assertEquals(1, and.getFilters().size());
+        assertEquals("(field1 EQUALS 1 AND field3 EQUALS 3)", String.valueOf(builder.filter));
+        
+        try
+        {
+            and.getFilters().add(Filters.equals("field4", 4));
+            throw new AssertionError("The filters must be unmodifiable");
+        }
+        catch(UnsupportedOperationException ex) {
+            assertEquals(1, and.getFilters().size());
+        }
+    }
+    
+    
+    
+    
+    /**
+     * Validates that equal criteria and their common subtrees share the same instance
+     */
+    @Test
+    public void testIntern() {
+        FilterCriteria status = Filters.equals("status", "A");
+        FilterCriteria first = FilterInterner.intern(Filters.and(status, Filters.equals("field1", 1)));
+        FilterCriteria second = FilterInterner.intern(Filters.and(Filters.equals("status", "A"), Filters.equals("field1", 1)));
+        FilterCriteria third = FilterInterner.intern(Filters.or(Filters.equals("status", "A"), Filters.equals("field2", 2)));
+        
+        assertSame(first, second);
+        assertSame(((BooleanFilterCriteria)first).getFilters().get(0), ((BooleanFilterCriteria)third).getFilters().get(0));
+        assertNotSame(first, third);
+        assertSame(first, FilterInterner.intern(first));
+        assertNull(FilterInterner.intern(null));
+    }
+}
@@ -0,0 +1,270 @@
+package com.apolloframework.query;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Predicate;
+
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.JoinType;
+
+import org.junit.Test;
+
+import com.apolloframework.query.FilterBuilder.PathResolver;
+
+/**
+ * Tests for the {@link FilterEvaluator}
+ * @author amarenco
+ *
+ */
+public class FilterEvaluatorTest {
+    
+    /**
+     * Validates the comparison of values, where numbers are compared by value
+     */
+    @Test
+    public void testValues() {
+        Item item = new Item("item1", 10, null);
+        
+        assertTrue(FilterEvaluator.compile(Filters.equals("name", "item1")).test(item));
+        assertFalse(FilterEvaluator.compile(Filters.equals("name", "item2")).test(item));
+        assertTrue(FilterEvaluator.compile(Filters.equals("quantity", 10L)).test(item));
+        assertTrue(FilterEvaluator.compile(Filters.equals("quantity", new BigDecimal("10.00"))).test(item));
+        assertTrue(FilterEvaluator.compile(Filters.notEquals("quantity", 11)).test(item));
+        assertTrue(FilterEvaluator.compile(Filters.in("quantity", 1L, 10L)).test(item));
+        assertFalse(FilterEvaluator.compile(Filters.in("quantity", Collections.emptyList())).test(item));
+        assertTrue(FilterEvaluator.compile(Filters.isNull("parent")).test(item));
+        assertTrue(FilterEvaluator.compile(Filters.isNotNull("name")).test(item));
+        assertTrue(FilterEvaluator.compile((FilterCriteria)null).test(item));
+    }
+    
+    
+    
+    
+    /**
+     * Validates the range filters, where numbers of different types are compared by value
+     */
+    @Test
+    public void testRanges() {
+        Item item = new Item("item1", 10, null);
+        
+        assertTrue(FilterEvaluator.compile(Filters.greaterThan("quantity", 9L)).test(item));
+        assertFalse(FilterEvaluator.compile(Filters.greaterThan("quantity", 10)).test(item));
+        assertTrue(FilterEvaluator.compile(Filters.greaterThanOrEquals("quantity", new BigDecimal("9.5"))).test(item));
+        assertTrue(FilterEvaluator.compile(Filters.lessThan("quantity", 10.5)).test(item));
+        assertTrue(FilterEvaluator.compile(Filters.lessThanOrEquals("quantity", 10)).test(item));
+        assertTrue(FilterEvaluator.compile(Filters.between("quantity", 10, 20)).test(item));
+        assertFalse(FilterEvaluator.compile(Filters.between("quantity", 11, 20)).test(item));
+        assertTrue(FilterEvaluator.compile(Filters.between("name", "item0", "item2")).test(item));
+        assertFalse(FilterEvaluator.compile(Filters.not(Filters.lessThan("name", "item2"))).test(new Item(null, 1, null)));
+    }
+    
+    
+    
+    
+    /**
+     * Validates that NaN and infinite values are compared without converting them into decimals
+     */
+    @Test
+    public void testNonFinite() {
+        Item item = new Item("item1", 10, null);
+        
+        item.ratio = Double.NaN;
+        assertFalse(FilterEvaluator.compile(Filters.equals("ratio", 1.5)).test(item));
+        assertTrue(FilterEvaluator.compile(Filters.equals("ratio", Double.NaN)).test(item));
+        assertTrue(FilterEvaluator.compile(Filters.greaterThan("ratio", Long.MAX_VALUE)).test(item));
+        assertTrue(FilterEvaluator.compile(Filters.lessThan("quantity", Float.NaN)).test(item));
+        
+        item.ratio = Double.POSITIVE_INFINITY;
+        assertTrue(FilterEvaluator.compile(Filters.greaterThan("ratio", new BigDecimal("1e400"))).test(item));
+        assertFalse(FilterEvaluator.compile(Filters.lessThan("ratio", 1)).test(item));
+        assertTrue(FilterEvaluator.compile(Filters.in("ratio", 1, Float.POSITIVE_INFINITY)).test(item));
+        
+        item.ratio = Double.NEGATIVE_INFINITY;
+        assertTrue(FilterEvaluator.compile(Filters.between("ratio", Double.NEGATIVE_INFINITY, 0)).test(item));
+        assertFalse(FilterEvaluator.compile(Filters.greaterThanOrEquals("ratio", Long.MIN_VALUE)).test(item));
+    }
+    
+    
+    
+    
+    /**
+     * Validates the string matching filters
+     */
+    @Test
+    public void testStringMatching() {
+        Item item = new Item("Item_1%", 10, null);
+        
+        assertTrue(FilterEvaluator.compile(Filters.startsWith("name", "Item_")).test(item));
+        assertFalse(FilterEvaluator.compile(Filters.startsWith("name", "item_")).test(item));
+        assertTrue(FilterEvaluator.compile(Filters.startsWithIgnoreCase("name", "item_")).test(item));
+        assertTrue(FilterEvaluator.compile(Filters.endsWith("name", "1%")).test(item));
+        assertFalse(FilterEvaluator.compile(Filters.contains("name", "m_2")).test(item));
+        assertTrue(FilterEvaluator.compile(Filters.containsIgnoreCase("name", "EM_")).test(item));
+        assertTrue(FilterEvaluator.compile(Filters.like("name", "I%_1_")).test(item));
+        assertFalse(FilterEvaluator.compile(Filters.not(Filters.like("name", "%"))).test(new Item(null, 1, null)));
+    }
+    
+    
+    
+    
+    /**
+     * Validates that comparisons with <code>null</code> are unknown, as in SQL
+     */
+    @Test
+    public void testNulls() {
+        Item item = new Item(null, 10, null);
+        
+        assertFalse(FilterEvaluator.compile(Filters.equals("name", "item1")).test(item));
+        assertFalse(FilterEvaluator.compile(Filters.notEquals("name", "item1")).test(item));
+        assertFalse(FilterEvaluator.compile(Filters.not(Filters.equals("name", "item1"))).test(item));
+        assertFalse(FilterEvaluator.compile(Filters.not(Filters.in("quantity", 1, null))).test(item));
+        assertTrue(FilterEvaluator.compile(Filters.in("quantity", 10, null)).test(item));
+        
+        // Unknown is absorbed by OR with true and by AND with false
+        assertTrue(FilterEvaluator.compile(Filters.or(Filters.equals("name", "item1"), Filters.equals("quantity", 10))).test(item));
+        assertTrue(FilterEvaluator.compile(Filters.not(Filters.and(Filters.equals("name", "item1"), Filters.equals("quantity", 11)))).test(item));
+    }
+    
+    
+    
+    
+    /**
+     * Validates the joins, where collections match any element and missing associations only match through outer joins
+     */
+    @Test
+    public void testJoins() {
+        Item parent = new Item("parent", 1, null);
+        parent.children = Arrays.asList(new Item("child1", 2, null), new Item("child2", 3, null));
+        Item child = new Item("child", 4, parent);
+        
+        assertTrue(FilterEvaluator.compile(Filters.equals("parent", "name", "parent")).test(child));
+        assertTrue(FilterEvaluator.compile(Filters.equals("parent.children", "name", "child2")).test(child));
+        assertFalse(FilterEvaluator.compile(Filters.equals("parent.children", "name", "child3")).test(child));
+        
+        // Every criteria on a join path must hold for the same element, as with the shared joins of the database
+        assertFalse(FilterEvaluator.compile(Filters.and(
+                Filters.equals("children", "quantity", 2),
+                Filters.equals("children", "name", "child2"))).test(parent));
+        assertTrue(FilterEvaluator.compile(Filters.and(
+                Filters.equals("children", "quantity", 3),
+                Filters.equals("children", "name", "child2"))).test(parent));
+        assertTrue(FilterEvaluator.compile(Filters.and(
+                Filters.equals("parent.children", "quantity", 2),
+                Filters.equals("parent", "name", "parent"))).test(child));
+        
+        // The optimized filter gives the same result
+        FilterCriteria negated = Filters.not(Filters.and(Filters.equals("children", "quantity", 2), Filters.equals("children", "name", "child1")));
+        assertTrue(FilterEvaluator.compile(negated).test(parent));
+        assertTrue(FilterEvaluator.compile(FilterOptimizer.optimize(negated)).test(parent));
+        
+        // An inner join without elements discards the object, even in a disjunction
+        assertFalse(FilterEvaluator.compile(Filters.or(Filters.equals("name", "child"), Filters.equals("children", "name", "child1"))).test(child));
+        
+        FilterBuilder missing = Filters.isNull("parent", "name").toBuilder();
+        assertFalse(FilterEvaluator.compile(missing).test(parent));
+        assertTrue(FilterEvaluator.compile(missing.defineJoin("parent", JoinType.LEFT)).test(parent));
+        assertFalse(FilterEvaluator.compile(Filters.isNotNull("children", "name")).test(child));
+    }
+    
+    
+    
+    
+    /**
+     * Validates the type filters, that compare the exact class
+     */
+    @Test
+    public void testTypes() {
+        Predicate<Object> predicate = FilterEvaluator.compile(Filters.type(Item.class));
+        
+        assertTrue(predicate.test(new Item("item1", 1, null)));
+        assertFalse(predicate.test(new SpecialItem()));
+        assertTrue(FilterEvaluator.compile(Filters.notType(Item.class)).test(new SpecialItem()));
+        
+        // The accessors are resolved for every class
+        Predicate<Item> names = FilterEvaluator.compile(Filters.equals("name", "special"));
+        assertTrue(names.test(new SpecialItem()));
+        assertFalse(names.test(new Item("item1", 1, null)));
+        assertTrue(names.test(new SpecialItem()));
+    }
+    
+    
+    
+    
+    /**
+     * Validates that unknown criteria and properties are rejected
+     */
+    @Test
+    public void testUnsupported() {
+        FilterCriteria custom = new FilterCriteria() {
+            @Override
+            public javax.persistence.criteria.Predicate toPredicate(CriteriaBuilder criteriaBuilder, PathResolver pathResolver) {
+                throw new UnsupportedOperationException();
+            }
+            
+            @Override
+            public FilterBuilder toBuilder() {
+                return new FilterBuilder(this);
+            }
+        };
+        
+        try
+        {
+            FilterEvaluator.compile(custom);
+            throw new AssertionError("Unsupported criteria must be rejected");
+        }
+        catch(IllegalArgumentException ex) {
+            assertEquals("Unsupported filter criteria", ex.getMessage().substring(0, 27));
+        }
+        
+        try
+        {
+            FilterEvaluator.compile(Filters.equals("unknown", 1)).test(new Item("item1", 1, null));
+            throw new AssertionError("Unknown properties must be rejected");
+        }
+        catch(IllegalArgumentException ex) {
+            assertTrue(ex.getMessage().startsWith("Unknown property unknown"));
+        }
+    }
+    
+    
+    
+    
+    /** Object used in the tests */
+    public static class Item {
+        private String name;
+        private int quantity;
+        private double ratio;
+        private Item parent;
+        private List<Item> children = Collections.emptyList();
+        
+        public Item(String name, int quantity, Item parent) {
+            this.name = name;
+            this.quantity = quantity;
+            this.parent = parent;
+        }
+        
+        public String getName() {
+            return name;
+        }
+        
+        public Item getParent() {
+            return parent;
+        }
+    }
+    
+    
+    
+    
+    /** Subclass used in the tests */
+    public static class SpecialItem extends Item {
+        public SpecialItem() {
+            super("special", 0, null);
+        }
+    }
+}
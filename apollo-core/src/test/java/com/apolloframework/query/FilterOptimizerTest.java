@@ -0,0 +1,96 @@
+package com.apolloframework.query;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Collections;
+
+import javax.persistence.criteria.Predicate.BooleanOperator;
+
+import org.junit.Test;
+
+/**
+ * Tests for the {@link FilterOptimizer}
+ * @author amarenco
+ *
+ */
+public class FilterOptimizerTest {
+    
+    /**
+     * Validates that nested filters are flattened and duplicated clauses are removed
+     */
+    @Test
+    public void testFlatten() {
+        FilterCriteria filter = Filters.and(
+                Filters.and(Filters.equals("field1", 1)),
+                Filters.and(Filters.equals("field2", 2), Filters.and(Filters.equals("field1", 1), Filters.isNull("field3"))),
+                Filters.and());
+        
+        assertEquals("(field1 EQUALS 1 AND field2 EQUALS 2 AND field3 NULL)", String.valueOf(FilterOptimizer.optimize(filter)));
+        assertEquals("field1 EQUALS 1", String.valueOf(FilterOptimizer.optimize(Filters.or(Filters.and(Filters.equals("field1", 1))))));
+        assertNull(FilterOptimizer.optimize(null));
+        
+        // Clauses that cannot be simplified are not copied
+        FilterCriteria single = Filters.equals("field1", 1);
+        assertSame(single, FilterOptimizer.optimize(single));
+    }
+    
+    
+    
+    
+    /**
+     * Validates that the negations are pushed down to the leaves
+     */
+    @Test
+    public void testNegations() {
+        assertEquals("field1 EQUALS 1", String.valueOf(FilterOptimizer.optimize(Filters.not(Filters.not(Filters.equals("field1", 1))))));
+        assertEquals("(field1 NOT_EQUALS 1 OR field2 NOT_NULL OR field3 LESS_THAN_OR_EQUALS 3)", String.valueOf(FilterOptimizer.optimize(
+                Filters.not(Filters.and(Filters.equals("field1", 1), Filters.isNull("field2"), Filters.greaterThan("field3", 3))))));
+        assertEquals("(NOT_TYPE(java.lang.String) AND NOT field1 STARTS_WITH 'a')", String.valueOf(FilterOptimizer.optimize(
+                Filters.not(Filters.or(Filters.type(String.class), Filters.startsWith("field1", "a"))))));
+        assertEquals("NOT field1 IN [1, 2]", String.valueOf(FilterOptimizer.optimize(Filters.not(Filters.in("field1", 1, 2)))));
+    }
+    
+    
+    
+    
+    /**
+     * Validates that the equalities of a disjunction on the same field are folded into a single <code>IN</code>
+     */
+    @Test
+    public void testFoldIn() {
+        FilterCriteria filter = Filters.or(
+                Filters.equals("field1", 1),
+                Filters.equals("field2", 2),
+                Filters.in("field1", 3, 1),
+                Filters.equals("join1", "field1", 4),
+                Filters.equals("field1", 5));
+        
+        assertEquals("(field1 IN [1, 3, 5] OR field2 EQUALS 2 OR join1.field1 EQUALS 4)", String.valueOf(FilterOptimizer.optimize(filter)));
+        assertEquals("field1 EQUALS 1", String.valueOf(FilterOptimizer.optimize(Filters.in("field1", 1, 1))));
+        
+        // Conjunctions are not folded
+        assertEquals("(field1 EQUALS 1 AND field1 EQUALS 2)", String.valueOf(FilterOptimizer.optimize(
+                Filters.and(Filters.equals("field1", 1), Filters.equals("field1", 2)))));
+    }
+    
+    
+    
+    
+    /**
+     * Validates that empty <code>IN</code> lists short-circuit the filters, unless the discarded clauses use joins
+     */
+    @Test
+    public void testEmptyIn() {
+        FilterCriteria empty = Filters.in("field1", Collections.emptyList());
+        
+        assertEquals(BooleanOperator.OR, ((BooleanFilterCriteria)FilterOptimizer.optimize(Filters.and(Filters.equals("field2", 2), empty))).getOperator());
+        assertEquals("field2 EQUALS 2", String.valueOf(FilterOptimizer.optimize(Filters.or(Filters.equals("field2", 2), empty))));
+        assertEquals(BooleanOperator.AND, ((BooleanFilterCriteria)FilterOptimizer.optimize(Filters.or(Filters.equals("field2", 2), Filters.not(empty)))).getOperator());
+        assertEquals("(join1.field2 EQUALS 2 OR ())", String.valueOf(FilterOptimizer.optimize(Filters.or(Filters.equals("join1", "field2", 2), Filters.not(empty)))));
+        
+        // Empty lists of joins keep the join
+        assertEquals("join1.field1 IN []", String.valueOf(FilterOptimizer.optimize(Filters.in("join1", "field1", Collections.emptyList()))));
+    }
+}
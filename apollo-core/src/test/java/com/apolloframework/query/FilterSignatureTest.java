@@ -0,0 +1,182 @@
+package com.apolloframework.query;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.JoinType;
+import javax.persistence.criteria.Predicate;
+
+import org.junit.Test;
+
+import com.apolloframework.query.FilterBuilder.PathResolver;
+
+/**
+ * Tests for the {@link FilterSignature}
+ * @author amarenco
+ *
+ */
+public class FilterSignatureTest {
+    
+    /**
+     * Validates that filters with the same structure and different values share the signature
+     */
+    @Test
+    public void testSameStructure() {
+        FilterSignature first = FilterSignature.of(Filters.and(Filters.equals("field1", 1), Filters.in("field2", 1, 2, 3)).toBuilder());
+        FilterSignature second = FilterSignature.of(Filters.and(Filters.equals("field1", 2), Filters.in("field2", 4, 5, 6, 7)).toBuilder());
+        FilterSignature third = FilterSignature.of(Filters.and(Filters.equals("field1", 2), Filters.in("field2", 4, 5, 6, 7, 8)).toBuilder());
+        FilterSignature fourth = FilterSignature.of(Filters.or(Filters.equals("field1", 1), Filters.in("field2", 1, 2, 3)).toBuilder());
+        
+        assertEquals(first.getSignature(), second.getSignature());
+        assertNotEquals(first.getSignature(), third.getSignature());
+        assertNotEquals(first.getSignature(), fourth.getSignature());
+    }
+    
+    
+    
+    
+    /**
+     * Validates the arguments, including the padding of the <code>IN</code> lists
+     */
+    @Test
+    public void testArguments() {
+        FilterSignature signature = FilterSignature.of(Filters.and(
+                Filters.equals("field1", 1),
+                Filters.isNull("field2"),
+                Filters.in("field3", 1, 2, 3),
+                Filters.or(Filters.in("field4", Collections.emptyList()), Filters.isNull("field5"))).toBuilder());
+        
+        assertEquals(2, signature.getArguments().size());
+        assertEquals(1, signature.getArguments().get(0));
+        assertEquals(Arrays.asList(1, 2, 3, 3), signature.getArguments().get(1));
+    }
+    
+    
+    
+    
+    /**
+     * Validates the rendered JPQL
+     */
+    @Test
+    public void testJpql() {
+        FilterBuilder filters = Filters.and(
+                Filters.equals("field1", 1),
+                Filters.not(Filters.isNull("join1", "field2")),
+                Filters.not(Filters.in("field3", 3, 4)),
+                Filters.or(Filters.notEquals("join2", "field4", 2), Filters.in("field5", 1, 2))).toBuilder()
+                .defineJoin("join2", JoinType.LEFT);
+        FilterSignature signature = FilterSignature.of(filters);
+        
+        assertTrue(signature.hasJoins());
+        assertEquals(" inner join e.join1 e_0 left join e.join2 e_1", signature.toJoinClause("e"));
+        assertEquals("(e.field1 = ?1 and e_0.field2 is not null and not (e.field3 in (?2)) and (e_1.field4 <> ?3 or e.field5 in (?4)))",
+                signature.toWhereClause("e", Class::getSimpleName));
+        
+        // Large lists are split in chunks
+        FilterSignature chunked = FilterSignature.of(Filters.in("field1", 1, 2, 3).toBuilder(), new InLists(2, true));
+        assertEquals("(e.field1 in (?1) or e.field1 in (?2))", chunked.toWhereClause("e", Class::getSimpleName));
+        assertEquals(Collections.singletonList(InLists.shapeOf(Arrays.asList(Arrays.asList(1, 2), Arrays.asList(3)))), chunked.getInListShapes());
+        
+        assertEquals("1 = 0", FilterSignature.of(Filters.in("field1", Collections.emptyList()).toBuilder()).toWhereClause("e", Class::getSimpleName));
+        assertEquals("type(e) = String", FilterSignature.of(Filters.type(String.class).toBuilder()).toWhereClause("e", Class::getSimpleName));
+        assertEquals("", FilterSignature.of(null).toWhereClause("e", Class::getSimpleName));
+        assertFalse(FilterSignature.of(null).hasJoins());
+    }
+    
+    
+    
+    
+    /**
+     * Validates the rendered JPQL and the arguments of the range filters
+     */
+    @Test
+    public void testRanges() {
+        FilterSignature signature = FilterSignature.of(Filters.and(
+                Filters.greaterThan("field1", 1),
+                Filters.greaterThanOrEquals("field2", 2),
+                Filters.lessThan("field3", 3),
+                Filters.lessThanOrEquals("field4", 4),
+                Filters.between("field5", 5, 6)).toBuilder());
+        
+        assertEquals("(e.field1 > ?1 and e.field2 >= ?2 and e.field3 < ?3 and e.field4 <= ?4 and e.field5 between ?5 and ?6)",
+                signature.toWhereClause("e", Class::getSimpleName));
+        assertEquals(Arrays.asList(1, 2, 3, 4, 5, 6), signature.getArguments());
+        assertEquals(signature.getSignature(), FilterSignature.of(Filters.and(
+                Filters.greaterThan("field1", 10),
+                Filters.greaterThanOrEquals("field2", 20),
+                Filters.lessThan("field3", 30),
+                Filters.lessThanOrEquals("field4", 40),
+                Filters.between("field5", 50, 60)).toBuilder()).getSignature());
+    }
+    
+    
+    
+    
+    /**
+     * Validates the rendered JPQL and the escaped patterns of the string matching filters
+     */
+    @Test
+    public void testStringMatching() {
+        FilterSignature signature = FilterSignature.of(Filters.and(
+                Filters.startsWith("field1", "a_b"),
+                Filters.containsIgnoreCase("field2", "C%d"),
+                Filters.like("field3", "e_f%")).toBuilder());
+        
+        assertEquals("(e.field1 like ?1 escape '!' and lower(e.field2) like ?2 escape '!' and e.field3 like ?3 escape '!')",
+                signature.toWhereClause("e", Class::getSimpleName));
+        assertEquals(Arrays.asList("a!_b%", "%c!%d%", "e_f%"), signature.getArguments());
+    }
+    
+    
+    
+    
+    /**
+     * Validates the rendered JPQL of nested joins, where every association is joined once
+     */
+    @Test
+    public void testNestedJoins() {
+        FilterBuilder filters = Filters.and(
+                Filters.equals("join1.join2", "field1", 1),
+                Filters.equals("join1", "field2", 2),
+                Filters.equals("join1.join2", "field3", 3)).toBuilder()
+                .defineJoin("join1.join2", JoinType.LEFT);
+        FilterSignature signature = FilterSignature.of(filters);
+        
+        assertEquals(" inner join e.join1 e_0 left join e_0.join2 e_1", signature.toJoinClause("e"));
+        assertEquals("(e_1.field1 = ?1 and e_0.field2 = ?2 and e_1.field3 = ?3)", signature.toWhereClause("e", Class::getSimpleName));
+        
+        assertNull(FilterSignature.of(Filters.equals("join1..join2", "field1", 1).toBuilder()));
+        assertNull(FilterSignature.of(Filters.equals("join1.", "field1", 1).toBuilder()));
+    }
+    
+    
+    
+    
+    /**
+     * Validates that unknown criteria and invalid names are not supported
+     */
+    @Test
+    public void testUnsupported() {
+        FilterCriteria custom = new FilterCriteria() {
+            @Override
+            public Predicate toPredicate(CriteriaBuilder criteriaBuilder, PathResolver pathResolver) {
+                throw new UnsupportedOperationException();
+            }
+            
+            @Override
+            public FilterBuilder toBuilder() {
+                return new FilterBuilder(this);
+            }
+        };
+        
+        assertNull(FilterSignature.of(Filters.and(Filters.equals("field1", 1), custom).toBuilder()));
+        assertNull(FilterSignature.of(Filters.equals("field1 or 1 = 1", 1).toBuilder()));
+    }
+}
@@ -299,6 +299,119 @@ public class FiltersTest {
     
     
     
+    /**
+     * Validates the instances created by the comparison factories
+     * and all of their overloaded method signatures
+     */
+    @Test
+    public void testComparisons() {
+        BinaryFilterCriteria filter = (BinaryFilterCriteria)Filters.greaterThan("field1", 1);
+        
+        assertEquals("field1", filter.getFieldName());
+        assertEquals(1, filter.getValue());
+        assertEquals(FilterOperation.GREATER_THAN, filter.getOperation());
+        assertTrue(StringUtils.isBlank(filter.getJoinName()));
+        
+        // Use the methods with the join name
+        filter = (BinaryFilterCriteria)Filters.greaterThanOrEquals("joinTable", "field2", 2);
+        
+        assertEquals("field2", filter.getFieldName());
+        assertEquals(2, filter.getValue());
+        assertEquals(FilterOperation.GREATER_THAN_OR_EQUALS, filter.getOperation());
+        assertEquals("joinTable", filter.getJoinName());
+        
+        assertEquals(FilterOperation.LESS_THAN, ((BinaryFilterCriteria)Filters.lessThan("field1", 1)).getOperation());
+        assertEquals(FilterOperation.LESS_THAN_OR_EQUALS, ((BinaryFilterCriteria)Filters.lessThanOrEquals("joinTable", "field1", 1)).getOperation());
+        
+        // Null values cannot be compared
+        try
+        {
+            Filters.lessThan("field1", null);
+            throw new AssertionError("Null values must be rejected");
+        }
+        catch(IllegalArgumentException ex) {
+            assertEquals("The value of the comparison cannot be null", ex.getMessage());
+        }
+    }
+    
+    
+    
+    
+    /**
+     * Validates the instances created by {@link Filters#between(String, Comparable, Comparable)}
+     * and all of its overloaded method signatures
+     */
+    @Test
+    public void testBetween() {
+        BinaryFilterCriteria filter = (BinaryFilterCriteria)Filters.between("field1", 1, 5);
+        
+        assertEquals("field1", filter.getFieldName());
+        assertEquals(Arrays.asList(1, 5), filter.getValue());
+        assertEquals(FilterOperation.BETWEEN, filter.getOperation());
+        assertTrue(StringUtils.isBlank(filter.getJoinName()));
+        
+        // Use the method with the join name
+        filter = (BinaryFilterCriteria)Filters.between("joinTable", "field2", "a", "c");
+        
+        assertEquals("field2", filter.getFieldName());
+        assertEquals(Arrays.asList("a", "c"), filter.getValue());
+        assertEquals("joinTable", filter.getJoinName());
+        
+        // Both bounds are required
+        try
+        {
+            Filters.between("field1", 1, null);
+            throw new AssertionError("Null bounds must be rejected");
+        }
+        catch(IllegalArgumentException ex) {
+            assertEquals("The bounds of the range cannot be null", ex.getMessage());
+        }
+    }
+    
+    
+    
+    
+    /**
+     * Validates the instances created by the string matching factories
+     * and all of their overloaded method signatures
+     */
+    @Test
+    public void testStringMatching() {
+        BinaryFilterCriteria filter = (BinaryFilterCriteria)Filters.startsWith("field1", "abc");
+        
+        assertEquals("field1", filter.getFieldName());
+        assertEquals("abc", filter.getValue());
+        assertEquals(FilterOperation.STARTS_WITH, filter.getOperation());
+        assertTrue(StringUtils.isBlank(filter.getJoinName()));
+        
+        // Use the methods with the join name
+        filter = (BinaryFilterCriteria)Filters.containsIgnoreCase("joinTable", "field2", "Abc");
+        
+        assertEquals("field2", filter.getFieldName());
+        assertEquals("Abc", filter.getValue());
+        assertEquals(FilterOperation.CONTAINS_IGNORE_CASE, filter.getOperation());
+        assertEquals("joinTable", filter.getJoinName());
+        
+        assertEquals(FilterOperation.LIKE, ((BinaryFilterCriteria)Filters.like("field1", "a%")).getOperation());
+        assertEquals(FilterOperation.ENDS_WITH, ((BinaryFilterCriteria)Filters.endsWith("field1", "a")).getOperation());
+        assertEquals(FilterOperation.LIKE_IGNORE_CASE, ((BinaryFilterCriteria)Filters.likeIgnoreCase("field1", "a%")).getOperation());
+        assertEquals(FilterOperation.STARTS_WITH_IGNORE_CASE, ((BinaryFilterCriteria)Filters.startsWithIgnoreCase("field1", "a")).getOperation());
+        assertEquals(FilterOperation.ENDS_WITH_IGNORE_CASE, ((BinaryFilterCriteria)Filters.endsWithIgnoreCase("field1", "a")).getOperation());
+        assertEquals(FilterOperation.CONTAINS, ((BinaryFilterCriteria)Filters.contains("field1", "a")).getOperation());
+        
+        try
+        {
+            Filters.contains("field1", null);
+            throw new AssertionError("Null values must be rejected");
+        }
+        catch(IllegalArgumentException ex) {
+            assertEquals("The text to match cannot be null", ex.getMessage());
+        }
+    }
+    
+    
+    
+    
     /**
      * Validates the instances created by {@link Filters#isTrue(String)}
      * and all of its overloaded method signatures
@@ -0,0 +1,72 @@
+package com.apolloframework.query;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests for the {@link InLists}
+ * @author amarenco
+ *
+ */
+public class InListsTest {
+    
+    /**
+     * Validates the padding up to the next power of two
+     */
+    @Test
+    public void testPadding() {
+        assertEquals(Collections.singletonList(Arrays.asList(1)), InLists.DEFAULT.toChunks(1));
+        assertEquals(Collections.singletonList(Arrays.asList(1, 2)), InLists.DEFAULT.toChunks(Arrays.asList(1, 2)));
+        assertEquals(Collections.singletonList(Arrays.asList(1, 2, 3, 3)), InLists.DEFAULT.toChunks(Arrays.asList(1, 2, 3)));
+        assertEquals(Collections.singletonList(Arrays.asList(1, 2, 3, 4, 5, 5, 5, 5)), InLists.DEFAULT.toChunks(Arrays.asList(1, 2, 3, 4, 5)));
+        assertTrue(InLists.DEFAULT.toChunks(Collections.emptyList()).isEmpty());
+        
+        // Duplicates are removed before padding
+        assertEquals(Collections.singletonList(Arrays.asList(1, 2)), InLists.DEFAULT.toChunks(Arrays.asList(1, 2, 1, 2)));
+        
+        assertEquals(Collections.singletonList(Arrays.asList(1, 2, 3)), new InLists(InLists.DEFAULT_MAX_SIZE, false).toChunks(Arrays.asList(1, 2, 3)));
+    }
+    
+    
+    
+    
+    /**
+     * Validates the chunks of the large lists
+     */
+    @Test
+    public void testChunks() {
+        InLists inLists = new InLists(4, true);
+        
+        List<Integer> values = new ArrayList<>();
+        for(int i = 0; i < 9; i++) {
+            values.add(i);
+        }
+        
+        List<List<Object>> chunks = inLists.toChunks(values);
+        assertEquals(3, chunks.size());
+        assertEquals(Arrays.asList(0, 1, 2, 3), chunks.get(0));
+        assertEquals(Arrays.asList(4, 5, 6, 7), chunks.get(1));
+        assertEquals(Arrays.asList(8), chunks.get(2));
+    }
+    
+    
+    
+    
+    /**
+     * Validates the shapes of the chunks, which are the same for lists of similar sizes
+     */
+    @Test
+    public void testShapes() {
+        assertEquals(InLists.shapeOf(InLists.DEFAULT.toChunks(Arrays.asList(1, 2, 3))), InLists.shapeOf(InLists.DEFAULT.toChunks(Arrays.asList(4, 5, 6, 7))));
+        assertNotEquals(InLists.shapeOf(InLists.DEFAULT.toChunks(Arrays.asList(1, 2, 3))), InLists.shapeOf(InLists.DEFAULT.toChunks(Arrays.asList(1, 2, 3, 4, 5))));
+        assertEquals(0, InLists.shapeOf(InLists.DEFAULT.toChunks(Collections.emptyList())));
+    }
+}
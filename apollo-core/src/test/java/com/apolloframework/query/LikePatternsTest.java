@@ -0,0 +1,54 @@
+package com.apolloframework.query;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests for the {@link LikePatterns}
+ * @author amarenco
+ *
+ */
+public class LikePatternsTest {
+    
+    /**
+     * Validates the patterns of every operation, where the wildcards of literal values are escaped
+     */
+    @Test
+    public void testPatterns() {
+        assertEquals("a!%b!_c!!d\\e", LikePatterns.escape("a%b_c!d\\e"));
+        assertEquals("ab%", LikePatterns.toPattern(FilterOperation.STARTS_WITH, "ab"));
+        assertEquals("%ab", LikePatterns.toPattern(FilterOperation.ENDS_WITH, "ab"));
+        assertEquals("%1!%%", LikePatterns.toPattern(FilterOperation.CONTAINS, "1%"));
+        assertEquals("a%b_", LikePatterns.toPattern(FilterOperation.LIKE, "a%b_"));
+        assertEquals("ab%", LikePatterns.toPattern(FilterOperation.STARTS_WITH_IGNORE_CASE, "AB"));
+        assertEquals("a%b", LikePatterns.toPattern(FilterOperation.LIKE_IGNORE_CASE, "A%B"));
+        
+        assertTrue(LikePatterns.isPatternOperation(FilterOperation.CONTAINS));
+        assertTrue(LikePatterns.isPatternOperation(FilterOperation.ENDS_WITH_IGNORE_CASE));
+        assertFalse(LikePatterns.isPatternOperation(FilterOperation.EQUALS));
+        assertFalse(LikePatterns.isIgnoreCase(FilterOperation.LIKE));
+    }
+    
+    
+    
+    
+    /**
+     * Validates the regular expressions used to evaluate the patterns in memory
+     */
+    @Test
+    public void testRegex() {
+        assertTrue(LikePatterns.toRegex("ab%").matcher("abc").matches());
+        assertTrue(LikePatterns.toRegex("a_c").matcher("abc").matches());
+        assertFalse(LikePatterns.toRegex("a_c").matcher("abbc").matches());
+        assertTrue(LikePatterns.toRegex("%.*%").matcher("a.*b").matches());
+        assertFalse(LikePatterns.toRegex("%.*%").matcher("ab").matches());
+        assertTrue(LikePatterns.toRegex("100!%").matcher("100%").matches());
+        assertFalse(LikePatterns.toRegex("100!%").matcher("1000").matches());
+        assertTrue(LikePatterns.toRegex("%").matcher("line1\nline2").matches());
+        assertTrue(LikePatterns.toRegex("a\\%").matcher("a\\b").matches());
+        assertTrue(LikePatterns.toRegex("a!!%").matcher("a!b").matches());
+    }
+}
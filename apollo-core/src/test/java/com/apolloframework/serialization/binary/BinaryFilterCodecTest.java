@@ -0,0 +1,140 @@
+package com.apolloframework.serialization.binary;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+
+import org.joda.time.DateTime;
+import org.junit.Test;
+
+import com.apolloframework.query.FilterCriteria;
+import com.apolloframework.query.Filters;
+import com.apolloframework.serialization.FilterReadPolicy;
+import com.apolloframework.serialization.json.JsonFilterCriteria;
+
+/**
+ * Tests for the {@link BinaryFilterCodec}
+ * @author amarenco
+ *
+ */
+public class BinaryFilterCodecTest {
+    
+    /**
+     * Validates that the criteria are encoded and decoded back, keeping the types of the values
+     */
+    @Test
+    public void testRoundTrip() {
+        FilterCriteria filter = Filters.and(
+                Filters.equals("customer", "name", "Zoë"),
+                Filters.not(Filters.in("id", 1L, -2L, Long.MAX_VALUE)),
+                Filters.or(Filters.isNull("deleted"), Filters.between("score", -1, 10)),
+                Filters.startsWith("description", "a_b"),
+                Filters.greaterThan("amount", new BigDecimal("10.50")),
+                Filters.lessThan("ratio", 0.25),
+                Filters.notEquals("big", new BigInteger("123456789012345678901234567890")),
+                Filters.equals("active", false),
+                Filters.type(String.class));
+        
+        assertEquals(filter, BinaryFilterCodec.decode(BinaryFilterCodec.encode(filter), FilterReadPolicy.allowAll().allowTypes(String.class)));
+    }
+    
+    
+    
+    
+    /**
+     * Validates that the Joda-Time values are encoded and decoded back into the types of the whitelisted fields
+     */
+    @Test
+    public void testJoda() {
+        FilterCriteria filter = Filters.or(
+                Filters.in("birthDate", new org.joda.time.LocalDate(2000, 1, 31), new org.joda.time.LocalDate(2001, 2, 28)),
+                Filters.between("createdAt", new org.joda.time.LocalDateTime(2000, 1, 31, 10, 20, 30, 400), new org.joda.time.LocalDateTime(2000, 2, 1, 0, 0)),
+                Filters.greaterThanOrEquals("updatedAt", new DateTime(2000, 1, 31, 10, 20, 30)));
+        FilterReadPolicy policy = new FilterReadPolicy()
+                .allowField("birthDate", org.joda.time.LocalDate.class)
+                .allowField("createdAt", org.joda.time.LocalDateTime.class)
+                .allowField("updatedAt", DateTime.class);
+        
+        assertEquals(filter, BinaryFilterCodec.decode(BinaryFilterCodec.encode(filter), policy));
+    }
+    
+    
+    
+    
+    /**
+     * Validates that the repeated strings are only written once
+     */
+    @Test
+    public void testCompact() {
+        FilterCriteria filter = Filters.or(
+                Filters.equals("customer", "status", "ACTIVE"),
+                Filters.and(Filters.equals("customer", "status", "INACTIVE"), Filters.greaterThan("customer", "status", "ACTIVE")));
+        byte[] data = BinaryFilterCodec.encode(filter);
+        
+        assertEquals(filter, BinaryFilterCodec.decode(data, FilterReadPolicy.allowAll()));
+        assertTrue(data.length < "customer.status".length() + "ACTIVE".length() + "INACTIVE".length() + 24);
+        assertTrue(data.length < JsonFilterCriteria.toJson(filter).length() / 3);
+    }
+    
+    
+    
+    
+    /**
+     * Validates that the criteria are validated with the policy
+     */
+    @Test
+    public void testPolicy() {
+        FilterReadPolicy policy = new FilterReadPolicy().allowField("id", Long.class).setMaxValues(2);
+        
+        assertEquals(Filters.in("id", 1L, 2L), BinaryFilterCodec.decode(BinaryFilterCodec.encode(Filters.in("id", 1, "2")), policy));
+        assertRejected(BinaryFilterCodec.encode(Filters.isNull("name")), policy);
+        assertRejected(BinaryFilterCodec.encode(Filters.in("id", 1, 2, 3)), policy);
+        assertRejected(BinaryFilterCodec.encode(Filters.type(String.class)), policy);
+        assertRejected(BinaryFilterCodec.encode(Filters.equals("id", new BigDecimal("1e999999999"))), policy);
+        assertRejected(BinaryFilterCodec.encode(Filters.equals("id", new BigDecimal("1e999999999"))), FilterReadPolicy.allowAll());
+    }
+    
+    
+    
+    
+    /**
+     * Validates that corrupted data is rejected without allocating the declared sizes
+     */
+    @Test
+    public void testCorrupted() {
+        FilterReadPolicy policy = FilterReadPolicy.allowAll();
+        byte[] data = BinaryFilterCodec.encode(Filters.and(Filters.equals("field1", "value1"), Filters.in("field2", 1, 2)));
+        
+        for(int length = 0; length < data.length; length++) {
+            assertRejected(Arrays.copyOf(data, length), policy);
+        }
+        
+        assertRejected(Arrays.copyOf(data, data.length + 1), policy);
+        assertRejected(new byte[] { 2, 1, 0 }, policy);
+        assertRejected(new byte[] { 1, 99 }, policy);
+        // An AND and an IN that declare 2^31 - 1 elements
+        assertRejected(new byte[] { 1, 1, (byte)0xFF, (byte)0xFF, (byte)0xFF, (byte)0xFF, 0x07 }, policy);
+        assertRejected(new byte[] { 1, 20, 0, 1, 'a', 9, (byte)0xFF, (byte)0xFF, (byte)0xFF, (byte)0xFF, 0x07 }, policy);
+        // A string that references a string not written yet
+        assertRejected(new byte[] { 1, 18, 1 }, policy);
+    }
+    
+    
+    /**
+     * Validates that encoded criteria are rejected
+     * @param data the encoded criteria
+     * @param policy the policy to validate the criteria
+     */
+    private static void assertRejected(byte[] data, FilterReadPolicy policy) {
+        try {
+            BinaryFilterCodec.decode(data, policy);
+            fail("The filter must be rejected: " + Arrays.toString(data));
+        } catch(IllegalArgumentException ex) {
+            // Expected
+        }
+    }
+}
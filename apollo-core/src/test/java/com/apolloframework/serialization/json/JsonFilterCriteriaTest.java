@@ -0,0 +1,219 @@
+package com.apolloframework.serialization.json;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+import org.joda.time.DateTime;
+import org.junit.Test;
+
+import com.apolloframework.query.FilterCriteria;
+import com.apolloframework.query.Filters;
+import com.apolloframework.serialization.FilterReadPolicy;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+
+/**
+ * Tests for the {@link JsonFilterCriteria}
+ * @author amarenco
+ *
+ */
+public class JsonFilterCriteriaTest {
+    
+    /**
+     * Validates that the criteria are written and read back
+     * @throws IOException if the JSON cannot be read
+     */
+    @Test
+    public void testRoundTrip() throws IOException {
+        FilterCriteria filter = Filters.and(
+                Filters.equals("customer", "name", "Ann \"A\""),
+                Filters.not(Filters.in("id", 1, 2, 3)),
+                Filters.or(Filters.isNull("deleted"), Filters.between("score", 1, 10)),
+                Filters.containsIgnoreCase("description", "50%"),
+                Filters.greaterThan("amount", new BigDecimal("10.50")),
+                Filters.equals("active", true),
+                Filters.notType(String.class));
+        FilterReadPolicy policy = FilterReadPolicy.allowAll().allowTypes(String.class);
+        
+        assertEquals(filter, JsonFilterCriteria.fromJson(JsonFilterCriteria.toJson(filter), policy));
+        assertEquals("{\"op\":\"IN\",\"field\":\"customer.id\",\"value\":[1,2]}", JsonFilterCriteria.toJson(Filters.in("customer", "id", 1, 2)));
+        assertNull(JsonFilterCriteria.fromJson("null", policy));
+    }
+    
+    
+    
+    
+    /**
+     * Validates that the values are converted into the types of the whitelisted fields
+     * @throws IOException if the JSON cannot be read
+     */
+    @Test
+    public void testWhitelist() throws IOException {
+        FilterReadPolicy policy = new FilterReadPolicy()
+                .allowField("id", Long.class)
+                .allowField("customer.birthDate", LocalDate.class)
+                .allowField("status", Status.class);
+        
+        assertEquals(Filters.in("id", 1L, 2L), JsonFilterCriteria.fromJson("{\"op\":\"IN\",\"field\":\"id\",\"value\":[1,\"2\"]}", policy));
+        assertEquals(Filters.lessThan("customer", "birthDate", LocalDate.of(2000, 1, 31)),
+                JsonFilterCriteria.fromJson(JsonFilterCriteria.toJson(Filters.lessThan("customer", "birthDate", LocalDate.of(2000, 1, 31))), policy));
+        assertEquals(Filters.equals("status", Status.ACTIVE), JsonFilterCriteria.fromJson("{\"value\":\"ACTIVE\",\"field\":\"status\",\"op\":\"EQUALS\"}", policy));
+        
+        assertRejected("{\"op\":\"EQUALS\",\"field\":\"password\",\"value\":\"a\"}", policy);
+        assertRejected("{\"op\":\"EQUALS\",\"field\":\"customer.id\",\"value\":1}", policy);
+        assertRejected("{\"op\":\"EQUALS\",\"field\":\"id\",\"value\":1.5}", policy);
+        assertRejected("{\"op\":\"EQUALS\",\"field\":\"status\",\"value\":\"UNKNOWN\"}", policy);
+        assertRejected("{\"op\":\"TYPE\",\"type\":\"java.lang.String\"}", policy);
+        assertRejected("{\"op\":\"EQUALS\",\"field\":\"id) or (1\",\"value\":1}", FilterReadPolicy.allowAll());
+        
+        // Short numbers with huge exponents
+        assertRejected("{\"op\":\"EQUALS\",\"field\":\"id\",\"value\":1e999999999}", policy);
+        assertRejected("{\"op\":\"EQUALS\",\"field\":\"id\",\"value\":\"1e-999999999\"}", policy);
+        assertRejected("{\"op\":\"EQUALS\",\"field\":\"amount\",\"value\":1e999999999}", FilterReadPolicy.allowAll());
+    }
+    
+    
+    
+    
+    /**
+     * Validates that the Joda-Time values are written with the ISO formats and read back
+     * @throws IOException if the JSON cannot be read
+     */
+    @Test
+    public void testJoda() throws IOException {
+        FilterCriteria filter = Filters.and(
+                Filters.equals("birthDate", new org.joda.time.LocalDate(2000, 1, 31)),
+                Filters.greaterThan("createdAt", new org.joda.time.LocalDateTime(2000, 1, 31, 10, 20, 30, 400)),
+                Filters.lessThan("updatedAt", new DateTime(2000, 1, 31, 10, 20, 30)));
+        FilterReadPolicy policy = new FilterReadPolicy()
+                .allowField("birthDate", org.joda.time.LocalDate.class)
+                .allowField("createdAt", org.joda.time.LocalDateTime.class)
+                .allowField("updatedAt", DateTime.class);
+        
+        String json = JsonFilterCriteria.toJson(filter);
+        assertTrue(json.contains("\"2000-01-31\""));
+        assertTrue(json.contains("\"2000-01-31T10:20:30.400"));
+        assertEquals(filter, JsonFilterCriteria.fromJson(json, policy));
+        assertRejected("{\"op\":\"EQUALS\",\"field\":\"birthDate\",\"value\":\"31/01/2000\"}", policy);
+    }
+    
+    
+    
+    
+    /**
+     * Validates that malformed criteria are rejected
+     */
+    @Test
+    public void testMalformed() {
+        FilterReadPolicy policy = FilterReadPolicy.allowAll();
+        
+        assertRejected("{\"op\":\"EQUALS\",\"field\":\"id\"}", policy);
+        assertRejected("{\"op\":\"NULL\",\"field\":\"id\",\"value\":1}", policy);
+        assertRejected("{\"op\":\"IN\",\"field\":\"id\",\"value\":1}", policy);
+        assertRejected("{\"op\":\"IN\",\"field\":\"id\",\"value\":[[1]]}", policy);
+        assertRejected("{\"op\":\"EQUALS\",\"field\":\"id\",\"value\":[1]}", policy);
+        assertRejected("{\"op\":\"BETWEEN\",\"field\":\"id\",\"value\":[1]}", policy);
+        assertRejected("{\"op\":\"GREATER_THAN\",\"field\":\"id\",\"value\":null}", policy);
+        assertRejected("{\"op\":\"XOR\",\"filters\":[]}", policy);
+        assertRejected("{\"op\":\"AND\",\"filters\":[],\"extra\":1}", policy);
+        assertRejected("{\"op\":\"EQUALS\",\"op\":\"IN\",\"field\":\"id\",\"value\":1}", policy);
+        assertRejected("{\"op\":\"AND\",\"filters\":[]} {}", policy);
+    }
+    
+    
+    
+    
+    /**
+     * Validates the limits of depth and size of the criteria
+     */
+    @Test
+    public void testLimits() {
+        FilterReadPolicy policy = FilterReadPolicy.allowAll().setMaxDepth(3).setMaxNodes(4).setMaxValues(3).setMaxStringLength(8);
+        
+        assertRejected("{\"op\":\"NOT\",\"filter\":{\"op\":\"NOT\",\"filter\":{\"op\":\"NOT\",\"filter\":{\"op\":\"NULL\",\"field\":\"id\"}}}}", policy);
+        assertRejected(JsonFilterCriteria.toJson(Filters.or(Filters.isNull("a"), Filters.isNull("b"), Filters.isNull("c"), Filters.isNull("d"))), policy);
+        assertRejected(JsonFilterCriteria.toJson(Filters.or(Filters.in("a", 1, 2), Filters.in("b", 3, 4))), policy);
+        assertRejected(JsonFilterCriteria.toJson(Filters.equals("a", "123456789")), policy);
+        assertRejected(JsonFilterCriteria.toJson(Filters.equals("a", new BigDecimal("1234567.89"))), policy);
+        
+        try {
+            assertEquals(Filters.or(Filters.in("a", 1, 2), Filters.equals("b", "12345678")),
+                    JsonFilterCriteria.fromJson(JsonFilterCriteria.toJson(Filters.or(Filters.in("a", 1, 2), Filters.equals("b", "12345678"))), policy));
+        } catch(IOException ex) {
+            fail(ex.getMessage());
+        }
+    }
+    
+    
+    
+    
+    /**
+     * Validates the serializer and deserializer registered in a mapper
+     * @throws IOException if the JSON cannot be read
+     */
+    @Test
+    public void testMapper() throws IOException {
+        SimpleModule module = new SimpleModule();
+        module.addSerializer(FilterCriteria.class, new JsonFilterCriteria.Serializer());
+        module.addDeserializer(FilterCriteria.class, new JsonFilterCriteria.Deserializer(new FilterReadPolicy().allowField("id", Long.class)));
+        ObjectMapper mapper = new ObjectMapper().registerModule(module);
+        
+        FilterCriteria filter = Filters.in("id", Arrays.asList(1L, 2L));
+        assertEquals(filter, mapper.readValue(mapper.writeValueAsString(filter), FilterCriteria.class));
+        
+        try {
+            mapper.readValue("{\"op\":\"NULL\",\"field\":\"name\"}", FilterCriteria.class);
+            fail("The field is not whitelisted");
+        } catch(JsonMappingException ex) {
+            assertTrue(ex.getMessage().contains("Field not allowed: name"));
+        }
+        
+        // The default deserializer does not allow any field
+        try {
+            new ObjectMapper().readValue("{\"filter\":{\"op\":\"NULL\",\"field\":\"id\"}}", AnnotatedRequest.class);
+            fail("The default policy does not allow any field");
+        } catch(JsonMappingException ex) {
+            assertTrue(ex.getMessage().contains("Field not allowed: id"));
+        }
+    }
+    
+    
+    /**
+     * Validates that a JSON filter is rejected
+     * @param json the JSON
+     * @param policy the policy to validate the criteria
+     */
+    private static void assertRejected(String json, FilterReadPolicy policy) {
+        try {
+            JsonFilterCriteria.fromJson(json, policy);
+            fail("The filter must be rejected: " + json);
+        } catch(IllegalArgumentException | IOException ex) {
+            // Expected
+        }
+    }
+    
+    
+    
+    
+    /** Sample request with an annotated filter */
+    private static class AnnotatedRequest {
+        @JsonDeserialize(using = JsonFilterCriteria.Deserializer.class)
+        public FilterCriteria filter;
+    }
+    
+    
+    /** Sample enum of the tests */
+    private enum Status {
+        ACTIVE,
+        INACTIVE
+    }
+}